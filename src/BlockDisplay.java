@@ -1,5 +1,6 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.*;
 import javax.swing.*;
 
 /**
@@ -15,28 +16,62 @@ import javax.swing.*;
  *
  * @author Pranav Sukesh
  * @version 3/15/2023
+ *
+ * Boards are painted by a BoardRenderer from a tile atlas
+ *
+ * @author Pranav Sukesh
+ * @version 3/27/2023
+ *
+ * The block size follows the window size and the display scale, and the window can be resized
+ *
+ * @author Pranav Sukesh
+ * @version 3/28/2023
  */
 // Used to display the contents of a game board
 public class BlockDisplay extends JComponent implements KeyListener
 {
-	private static final Color BACKGROUND = new Color(30,30,30,255);
-
-	private static final Color BORDER = Color.BLACK;
-
-	private static final int OUTLINE = 2;
+	private static final int OUTLINE = BoardRenderer.OUTLINE;
 	private static final int BLOCKSIZE = 20;
+	private static final int MIN_BLOCKSIZE = 4;
 
-	private MyBoundedGrid<Block> board;
+	private BoardRenderer renderer;
+	private MyBoundedGrid<Block> blocks;
+	private Overlay overlay;
+	private CellPainter cellPainter;
 	private JFrame frame;
 	private ArrowListener listener;
 
+	// the device size the block size was last computed for, and the identity-scaled
+	// transform reused by every paint
+	private int deviceWidth;
+	private int deviceHeight;
+	private AffineTransform deviceTransform;
+
 	private boolean cringeControls;
 
-	// Constructs a new display for displaying the given board
-	public BlockDisplay(MyBoundedGrid<Block> board)
+	// Constructs a new display for displaying the given board, with the wall and side panel
+	// laid out by the given configuration
+	public BlockDisplay(Board board, BoardConfig config)
+	{
+		overlay = new Overlay();
+		renderer = new BoardRenderer(board, config, overlay, BLOCKSIZE);
+		init();
+	}
+
+	// Constructs a new display for displaying the given grid of blocks
+	public BlockDisplay(MyBoundedGrid<Block> blocks)
+	{
+		this.blocks = blocks;
+		overlay = new Overlay();
+		init();
+	}
+
+	// Creates the window on the event-dispatching thread and waits for it to appear
+	private void init()
 	{
 		cringeControls = false;
-		this.board = board;
+		cellPainter = new CellPainter();
+		deviceTransform = new AffineTransform();
 
 		//Schedule a job for the event-dispatching thread:
 		//creating and showing this application's GUI.
@@ -71,14 +106,32 @@ public class BlockDisplay extends JComponent implements KeyListener
 		//Create and set up the window.
 		frame = new JFrame();
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.getContentPane().add(this);
 		frame.addKeyListener(this);
 
+		//Boards start at the biggest block size that fits most of the screen and follow the
+		//window when it is resized
+		Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment()
+				.getMaximumWindowBounds();
+		int blockSize = BLOCKSIZE;
+		if (renderer != null)
+			blockSize = Math.max(MIN_BLOCKSIZE, Math.min(screen.width * 85 / 100 / getNumCols(),
+					screen.height * 85 / 100 / getNumRows()));
+		Dimension size = new Dimension(blockSize * getNumCols(), blockSize * getNumRows());
+		this.setPreferredSize(size);
+
+		//Boards too big to fit even at the smallest block size are shown in a scroll pane
+		if (size.width > screen.width || size.height > screen.height)
+		{
+			JScrollPane scroll = new JScrollPane(this);
+			scroll.setFocusable(false);
+			scroll.setPreferredSize(new Dimension(Math.min(size.width + 20, screen.width),
+					Math.min(size.height, screen.height - 40)));
+			frame.getContentPane().add(scroll);
+		}
+		else
+			frame.getContentPane().add(this);
+
 		//Display the window.
-		this.setPreferredSize(new Dimension(
-				BLOCKSIZE * board.getNumCols(),
-				BLOCKSIZE * board.getNumRows()
-		));
 
 		frame.pack();
 		frame.setVisible(true);
@@ -86,51 +139,87 @@ public class BlockDisplay extends JComponent implements KeyListener
 
 	public void paintComponent(Graphics g)
 	{
-		g.setColor(BACKGROUND);
+		GameEvents.PaintEvent event = new GameEvents.PaintEvent();
+		event.begin();
+		long start = System.nanoTime();
+		g.setColor(BoardRenderer.BACKGROUND);
 		g.fillRect(0, 0, getWidth(), getHeight());
-		g.setColor(BORDER);
-		g.fillRect(0, 0, BLOCKSIZE * board.getNumCols() + OUTLINE, BLOCKSIZE * board.getNumRows());
 
-		for (int row = 0; row < board.getNumRows(); row++)
-			for (int col = 0; col < board.getNumCols(); col++)
-			{
-				Location loc = new Location(row, col);
+		if (renderer != null)
+		{
+			paintScaled((Graphics2D) g);
+		}
+		else
+		{
+			g.setColor(BoardRenderer.BORDER);
+			g.fillRect(0, 0, BLOCKSIZE * getNumCols() + OUTLINE, BLOCKSIZE * getNumRows());
 
-				Block square = board.get(loc);
+			// only the occupied cells are visited, the background covers the rest
+			cellPainter.g = g;
+			blocks.forEachOccupied(cellPainter);
+			cellPainter.g = null;
+		}
 
-				if (square == null)
-				{
-					g.setColor(BACKGROUND);
-				}
-				else if (square.getColor().equals(Tetrad.TRAIL))
-				{
-					g.setColor(Tetrad.TRAIL);
-					g.fillRect(col * BLOCKSIZE, row * BLOCKSIZE,
-							BLOCKSIZE, BLOCKSIZE);
-				}
-				else
-				{
-					if (!(square.getColor().equals(Tetrad.SHADOW)))
-					{
-						Color c = square.getColor();
+		Metrics.PAINTS.increment();
+		Metrics.PAINT_TIME.record(System.nanoTime() - start);
+		event.width = getWidth();
+		event.height = getHeight();
+		event.commit();
+	}
 
-						g.setColor(c);
-						g.fillRect(col * BLOCKSIZE + OUTLINE/2 + (BLOCKSIZE) / 5,
-								row * BLOCKSIZE + OUTLINE/2 + (BLOCKSIZE) / 5,
-								BLOCKSIZE*3/5 - 1, BLOCKSIZE*3/5 - 1);
+	// Paints the board in device pixels. The block size is recomputed from the size of the
+	// component and the scale of the display only when that size changes, so the renderer
+	// rebuilds its tiles on a resize and otherwise blits them 1:1 without any scaling.
+	private void paintScaled(Graphics2D g2)
+	{
+		AffineTransform tx = g2.getTransform();
+		int w = (int) Math.round(getWidth() * tx.getScaleX());
+		int h = (int) Math.round(getHeight() * tx.getScaleY());
+		if (w != deviceWidth || h != deviceHeight)
+		{
+			deviceWidth = w;
+			deviceHeight = h;
+			renderer.setBlockSize(Math.max(1, Math.min((w - OUTLINE) / getNumCols(),
+					h / getNumRows())));
+		}
 
-					}
-					else
-						g.setColor(square.getColor());
+		deviceTransform.setToTranslation(Math.round(tx.getTranslateX()),
+				Math.round(tx.getTranslateY()));
+		g2.setTransform(deviceTransform);
+		g2.translate((w - renderer.getWidth()) / 2, (h - renderer.getHeight()) / 2);
+		renderer.paint(g2);
+		g2.setTransform(tx);
+	}
 
-					g.fillRect(col * BLOCKSIZE + OUTLINE / 2, row * BLOCKSIZE + OUTLINE / 2,
-							BLOCKSIZE - OUTLINE, BLOCKSIZE - OUTLINE);
-				}
+	// Returns the number of rows being displayed
+	private int getNumRows()
+	{
+		return renderer != null ? renderer.getNumRows() : blocks.getNumRows();
+	}
 
+	// Returns the number of columns being displayed, including the wall and side panel
+	private int getNumCols()
+	{
+		return renderer != null ? renderer.getNumCols() : blocks.getNumCols();
+	}
 
+	// Paints each block of a grid of blocks it visits with the graphics it was given. One
+	// instance is reused for every paint so that drawing the grid does not allocate.
+	private class CellPainter implements CellVisitor
+	{
+		private Graphics g;
 
-			}
+		public void visit(int row, int col)
+		{
+			Block square = blocks.get(new Location(row, col));
 
+			g.setColor(square.getColor());
+			g.fillRect(col * BLOCKSIZE + OUTLINE/2 + (BLOCKSIZE) / 5,
+					row * BLOCKSIZE + OUTLINE/2 + (BLOCKSIZE) / 5,
+					BLOCKSIZE*3/5 - 1, BLOCKSIZE*3/5 - 1);
+			g.fillRect(col * BLOCKSIZE + OUTLINE / 2, row * BLOCKSIZE + OUTLINE / 2,
+					BLOCKSIZE - OUTLINE, BLOCKSIZE - OUTLINE);
+		}
 	}
 
 	//Redraws the board to include the pieces and border colors.
@@ -139,6 +228,24 @@ public class BlockDisplay extends JComponent implements KeyListener
 		repaint();
 	}
 
+	// Returns the overlay of shadow and trail cells drawn over the board.
+	public Overlay getOverlay()
+	{
+		return overlay;
+	}
+
+	// Sets the queue of upcoming shapes shown in the side panel.
+	public void setPreview(PieceQueue preview)
+	{
+		renderer.setPreview(preview);
+	}
+
+	// Sets the shape shown in the hold slot of the side panel (-1 for none).
+	public void setHeldShape(int shape)
+	{
+		renderer.setHeldShape(shape);
+	}
+
 	// Sets the title of the window.
 	public void setTitle(String title)
 	{
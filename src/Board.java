@@ -0,0 +1,389 @@
+/**
+ * A Board is the compact playfield used by the game. Each cell is stored as a single byte: 0 is
+ * an empty cell, 1 through 7 are the seven tetrad shapes, and the remaining codes are used for
+ * walls, garbage and the white flash of a hard drop. Colors are only looked up from the Palette
+ * when the board is drawn, so a board can be copied or snapshotted as plain byte arrays. Like
+ * MyBoundedGrid, a board keeps an index of its occupied cells so they can be visited without
+ * scanning every cell.
+ *
+ * The rows are kept in a circular buffer of row arrays: logical row r lives in physical row
+ * (head + r) % rows, and each physical row carries its own occupied-cell index. Removing a row
+ * or pushing rows in from the bottom therefore moves row references instead of cells.
+ *
+ * Every change to the cells bumps a version number, so a viewer can tell whether the board has
+ * changed since it was last drawn without comparing cells.
+ *
+ * @author Pranav Sukesh
+ * @version 3/21/2023
+ */
+public class Board
+{
+    public static final byte EMPTY = 0;
+    public static final byte WALL = 8;
+    public static final byte GARBAGE = 9;
+    public static final byte FLASH = 10;
+
+    private byte[][] cells;
+    private int rows;
+    private int cols;
+    private int head;
+
+    private int[][] occupied;
+    private int[][] slots;
+    private int[] rowCounts;
+    private int numOccupied;
+    private volatile long version;
+
+    /**
+     * Constructs an empty Board with the given dimensions.
+     * @param rows  The number of rows in this Board
+     * @param cols  The number of columns in this Board
+     */
+    public Board(int rows, int cols)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        cells = new byte[rows][cols];
+        occupied = new int[rows][cols];
+        slots = new int[rows][cols];
+        rowCounts = new int[rows];
+        head = 0;
+        numOccupied = 0;
+    }
+
+    /**
+     * Returns the physical row that holds the given logical row.
+     * @param row   The logical row
+     * @return      The index of the physical row
+     */
+    private int physical(int row)
+    {
+        int p = head + row;
+        if (p >= rows)
+            p -= rows;
+        return p;
+    }
+
+    /**
+     * Returns the cell code of the given tetrad shape.
+     * @param shape The shape of the tetrad (0 - 6)
+     * @return      The cell code used for that shape
+     */
+    public static byte pieceCode(int shape)
+    {
+        return (byte) (shape + 1);
+    }
+
+    /**
+     * Returns the number of rows in this Board.
+     * @return  The number of rows in this Board
+     */
+    public int getNumRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns in this Board.
+     * @return  The number of columns in this Board
+     */
+    public int getNumCols()
+    {
+        return cols;
+    }
+
+    /**
+     * Determines whether the given row and column are inside this Board.
+     * @param row   The row to check
+     * @param col   The column to check
+     * @return      True if the cell is inside this Board, false otherwise
+     */
+    public boolean isValid(int row, int col)
+    {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    /**
+     * Determines whether a location is inside this Board.
+     * @param loc   The location to check
+     * @return      True if loc is inside this Board, false otherwise
+     */
+    public boolean isValid(Location loc)
+    {
+        return loc != null && isValid(loc.getRow(), loc.getCol());
+    }
+
+    /**
+     * Returns the code stored in the given cell, or EMPTY if the cell is outside this Board.
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @return      The code stored in the cell
+     */
+    public byte get(int row, int col)
+    {
+        if (!isValid(row, col))
+            return EMPTY;
+        return cells[physical(row)][col];
+    }
+
+    /**
+     * Returns the code stored at the given location, or EMPTY if it is outside this Board.
+     * @param loc   The location of the cell
+     * @return      The code stored at loc
+     */
+    public byte get(Location loc)
+    {
+        return get(loc.getRow(), loc.getCol());
+    }
+
+    /**
+     * Stores a code in the given cell. Cells outside this Board are ignored.
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @param code  The code to store
+     * @return      The code that was previously in the cell
+     */
+    public byte set(int row, int col, byte code)
+    {
+        if (!isValid(row, col))
+            return EMPTY;
+        int p = physical(row);
+        byte old = cells[p][col];
+        cells[p][col] = code;
+        if (old != code)
+            version++;
+        if (old == EMPTY && code != EMPTY)
+        {
+            slots[p][col] = rowCounts[p];
+            occupied[p][rowCounts[p]] = col;
+            rowCounts[p]++;
+            numOccupied++;
+        }
+        else if (old != EMPTY && code == EMPTY)
+        {
+            int slot = slots[p][col];
+            rowCounts[p]--;
+            int last = occupied[p][rowCounts[p]];
+            occupied[p][slot] = last;
+            slots[p][last] = slot;
+            numOccupied--;
+        }
+        return old;
+    }
+
+    /**
+     * Stores a code at the given location. Locations outside this Board are ignored.
+     * @param loc   The location of the cell
+     * @param code  The code to store
+     * @return      The code that was previously at loc
+     */
+    public byte set(Location loc, byte code)
+    {
+        return set(loc.getRow(), loc.getCol(), code);
+    }
+
+    /**
+     * Determines whether the given cell is inside this Board and empty.
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @return      True if the cell is valid and empty, false otherwise
+     */
+    public boolean isEmpty(int row, int col)
+    {
+        return isValid(row, col) && cells[physical(row)][col] == EMPTY;
+    }
+
+    /**
+     * Determines whether the given location is inside this Board and empty.
+     * @param loc   The location of the cell
+     * @return      True if loc is valid and empty, false otherwise
+     */
+    public boolean isEmpty(Location loc)
+    {
+        return loc != null && isEmpty(loc.getRow(), loc.getCol());
+    }
+
+    /**
+     * Returns a copy of this Board.
+     * @return  A new Board with the same dimensions and cells as this Board
+     */
+    public Board copy()
+    {
+        Board b = new Board(rows, cols);
+        b.copyFrom(this);
+        return b;
+    }
+
+    /**
+     * Overwrites the cells of this Board with the cells of another Board of the same size.
+     * @param other The Board to copy from
+     */
+    public void copyFrom(Board other)
+    {
+        for (int r = 0; r < rows; r++)
+        {
+            int p = physical(r);
+            int q = other.physical(r);
+            System.arraycopy(other.cells[q], 0, cells[p], 0, cols);
+            System.arraycopy(other.occupied[q], 0, occupied[p], 0, other.rowCounts[q]);
+            System.arraycopy(other.slots[q], 0, slots[p], 0, cols);
+            rowCounts[p] = other.rowCounts[q];
+        }
+        numOccupied = other.numOccupied;
+        version++;
+    }
+
+    /**
+     * Returns the version of this Board, which changes every time a cell changes.
+     * @return  The version of this Board
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the number of occupied cells in this Board.
+     * @return  The number of occupied cells
+     */
+    public int getNumOccupied()
+    {
+        return numOccupied;
+    }
+
+    /**
+     * Returns the number of occupied cells in the given row.
+     * @param row   The row to count
+     * @return      The number of occupied cells in the row
+     */
+    public int getRowCount(int row)
+    {
+        return rowCounts[physical(row)];
+    }
+
+    /**
+     * Calls the visitor once for every occupied cell of this Board, row by row. Empty rows are
+     * skipped without looking at their cells. The order of the cells within a row is
+     * unspecified, and the board must not be changed during the visit.
+     * @param visitor   The visitor to call with the row and column of each occupied cell
+     */
+    public void forEachOccupied(CellVisitor visitor)
+    {
+        for (int r = 0; r < rows; r++)
+        {
+            int p = physical(r);
+            for (int i = 0; i < rowCounts[p]; i++)
+            {
+                visitor.visit(r, occupied[p][i]);
+            }
+        }
+    }
+
+    /**
+     * Removes the given row from this Board. Every row above it moves down one row and an empty
+     * row appears at the top. Only row references are moved, and only on the shorter side of
+     * the removed row: when fewer rows are below it, those rows are shifted up instead and the
+     * circular buffer is rotated down one row.
+     * @param row   The row to remove
+     */
+    public void removeRow(int row)
+    {
+        int p = physical(row);
+        clearPhysicalRow(p);
+        byte[] freeCells = cells[p];
+        int[] freeOccupied = occupied[p];
+        int[] freeSlots = slots[p];
+
+        if (row <= rows - 1 - row)
+        {
+            for (int r = row; r > 0; r--)
+            {
+                moveRow(physical(r - 1), physical(r));
+            }
+        }
+        else
+        {
+            for (int r = row; r < rows - 1; r++)
+            {
+                moveRow(physical(r + 1), physical(r));
+            }
+            head = physical(rows - 1);
+        }
+
+        int top = physical(0);
+        cells[top] = freeCells;
+        occupied[top] = freeOccupied;
+        slots[top] = freeSlots;
+        rowCounts[top] = 0;
+        version++;
+    }
+
+    /**
+     * Pushes k empty rows in at the bottom of this Board. Every row moves up k rows and the top
+     * k rows are discarded. This is done by advancing the head of the circular buffer, so only
+     * the k recycled rows are touched. The new rows can then be filled with set.
+     * @param k     The number of rows to push in (0 &lt;= k &lt;= the number of rows)
+     * @return      True if any of the discarded rows had an occupied cell, false otherwise
+     */
+    public boolean insertRowsAtBottom(int k)
+    {
+        boolean pushedOff = false;
+        for (int r = 0; r < k; r++)
+        {
+            if (rowCounts[physical(r)] > 0)
+                pushedOff = true;
+            clearPhysicalRow(physical(r));
+        }
+        head = physical(k);
+        version++;
+        return pushedOff;
+    }
+
+    /**
+     * Empties a physical row by clearing only its occupied cells.
+     * @param p The physical row
+     */
+    private void clearPhysicalRow(int p)
+    {
+        for (int i = 0; i < rowCounts[p]; i++)
+        {
+            cells[p][occupied[p][i]] = EMPTY;
+        }
+        numOccupied -= rowCounts[p];
+        rowCounts[p] = 0;
+    }
+
+    /**
+     * Moves the row arrays of one physical row into another physical row slot.
+     * @param from  The physical row to move
+     * @param to    The physical row slot to move it into
+     */
+    private void moveRow(int from, int to)
+    {
+        cells[to] = cells[from];
+        occupied[to] = occupied[from];
+        slots[to] = slots[from];
+        rowCounts[to] = rowCounts[from];
+    }
+
+    /**
+     * Returns a grid of Blocks showing the current contents of this Board, colored with the
+     * Palette. Changes to the returned grid do not affect this Board.
+     * @return  A MyBoundedGrid of Blocks matching this Board
+     */
+    public MyBoundedGrid<Block> toBlockGrid()
+    {
+        MyBoundedGrid<Block> gr = new MyBoundedGrid<Block>(rows, cols);
+        for (int r = 0; r < rows; r++)
+        {
+            int p = physical(r);
+            for (int i = 0; i < rowCounts[p]; i++)
+            {
+                Block b = new Block();
+                b.setColor(Palette.colorOf(cells[p][occupied[p][i]]));
+                b.putSelfInGrid(gr, new Location(r, occupied[p][i]));
+            }
+        }
+        return gr;
+    }
+}
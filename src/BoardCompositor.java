@@ -0,0 +1,266 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * A BoardCompositor draws many boards side by side into one image, for watching lots of games
+ * at once. The boards are laid out in the grid of columns and rows that gives them the biggest
+ * block size in the available area, and every board is drawn at that block size from one shared
+ * TileAtlas.
+ *
+ * Each board keeps its own offscreen image, which is only redrawn when the board is dirty: when
+ * its cells, its shadow or its HUD have changed since it was last drawn, or while it has effects
+ * playing. The dirty boards are rasterized in parallel on the common fork/join pool, then copied
+ * into the composite image, which is drawn to the screen with a single blit.
+ *
+ * @author Pranav Sukesh
+ * @version 4/2/2023
+ */
+public class BoardCompositor
+{
+    private static final int GAP = 4;
+
+    private ArrayList<Entry> entries;
+    private TileAtlas atlas;
+    private GraphicsConfiguration gc;
+    private BufferedImage composite;
+    private int columns;
+    private int cellWidth, cellHeight;
+    private int[] dirty;
+    private int dirtyCount;
+
+    /**
+     * Constructs a compositor with no boards.
+     */
+    public BoardCompositor()
+    {
+        entries = new ArrayList<Entry>();
+        dirty = new int[0];
+        columns = 1;
+    }
+
+    /**
+     * Adds a board to be drawn after the boards already added.
+     * @param board     The board to draw
+     * @param config    The layout of its wall and side panel (null to draw only the board)
+     * @param overlay   The overlay drawn over it
+     * @return          The index of the board
+     */
+    public synchronized int add(Board board, BoardConfig config, Overlay overlay)
+    {
+        return add(new Entry(new BoardRenderer(board, config, overlay, 1), overlay, null));
+    }
+
+    /**
+     * Adds the board of a game to be drawn after the boards already added, along with its
+     * upcoming and held shapes.
+     * @param game  The game to draw
+     * @return      The index of the board
+     */
+    public synchronized int add(Tetris game)
+    {
+        BoardRenderer renderer = new BoardRenderer(game.getBoard(), game.getConfig(),
+                game.getOverlay(), 1);
+        renderer.setPreview(game.getPreview());
+        return add(new Entry(renderer, game.getOverlay(), game));
+    }
+
+    /**
+     * Adds an entry after the entries already added.
+     * @param e     The entry to add
+     * @return      The index of the entry
+     */
+    private int add(Entry e)
+    {
+        entries.add(e);
+        dirty = new int[entries.size()];
+        composite = null;
+        return entries.size() - 1;
+    }
+
+    /**
+     * Returns the number of boards drawn.
+     * @return  The number of boards
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of boards that were redrawn by the last call to render.
+     * @return  The number of boards redrawn
+     */
+    public synchronized int getDirtyCount()
+    {
+        return dirtyCount;
+    }
+
+    /**
+     * Lays the boards out to fill an area of the given size, picking the number of columns that
+     * gives the biggest block size. Every board is redrawn if the block size changes. The wall
+     * column of every height of board is drawn into the new atlas here, before any board is
+     * drawn in parallel.
+     * @param width     The width of the area in pixels
+     * @param height    The height of the area in pixels
+     * @param gc        The graphics configuration the images will be drawn to (may be null)
+     */
+    public synchronized void layout(int width, int height, GraphicsConfiguration gc)
+    {
+        if (entries.isEmpty() || width <= 0 || height <= 0)
+            return;
+
+        int maxCols = 1;
+        int maxRows = 1;
+        for (Entry e : entries)
+        {
+            maxCols = Math.max(maxCols, e.renderer.getNumCols());
+            maxRows = Math.max(maxRows, e.renderer.getNumRows());
+        }
+
+        int n = entries.size();
+        int bestColumns = 1;
+        int bestSize = 0;
+        for (int c = 1; c <= n; c++)
+        {
+            int r = (n + c - 1) / c;
+            int size = Math.min((width / c - GAP) / maxCols, (height / r - GAP) / maxRows);
+            if (size > bestSize)
+            {
+                bestSize = size;
+                bestColumns = c;
+            }
+        }
+        bestSize = Math.max(1, bestSize);
+
+        if (atlas != null && atlas.getBlockSize() == bestSize && columns == bestColumns
+                && composite != null && composite.getWidth() == width
+                && composite.getHeight() == height && this.gc == gc)
+            return;
+
+        this.gc = gc;
+        columns = bestColumns;
+        atlas = new TileAtlas(bestSize, gc);
+        cellWidth = width / columns;
+        cellHeight = height / ((n + columns - 1) / columns);
+        composite = createImage(width, height);
+        Graphics2D g = composite.createGraphics();
+        g.setColor(BoardRenderer.BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+
+        for (Entry e : entries)
+        {
+            e.renderer.setAtlas(atlas);
+            atlas.getWallColumn(e.renderer.getNumRows());
+            e.image = createImage(e.renderer.getWidth(), e.renderer.getHeight());
+            e.drawn = false;
+        }
+    }
+
+    /**
+     * Redraws the dirty boards in parallel and copies them into the composite image.
+     * @return  The composite image, or null if layout has not been called
+     */
+    public synchronized BufferedImage render()
+    {
+        if (composite == null)
+            return null;
+
+        dirtyCount = 0;
+        for (int i = 0; i < entries.size(); i++)
+        {
+            if (entries.get(i).isDirty())
+                dirty[dirtyCount++] = i;
+        }
+
+        IntStream.range(0, dirtyCount).parallel().forEach(j -> entries.get(dirty[j]).draw());
+
+        Graphics2D g = composite.createGraphics();
+        for (int j = 0; j < dirtyCount; j++)
+        {
+            int i = dirty[j];
+            BufferedImage image = entries.get(i).image;
+            int x = (i % columns) * cellWidth + (cellWidth - image.getWidth()) / 2;
+            int y = (i / columns) * cellHeight + (cellHeight - image.getHeight()) / 2;
+            g.drawImage(image, x, y, null);
+        }
+        g.dispose();
+        return composite;
+    }
+
+    /**
+     * Creates an opaque image of the given size.
+     * @param width     The width of the image
+     * @param height    The height of the image
+     * @return          A new image
+     */
+    private BufferedImage createImage(int width, int height)
+    {
+        if (gc != null)
+            return gc.createCompatibleImage(width, height, Transparency.OPAQUE);
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * An Entry is one board of the compositor, with its renderer, the game it belongs to (if
+     * any), its offscreen image and the versions of the board, shadow and HUD it was last drawn
+     * at.
+     */
+    private static class Entry
+    {
+        private BoardRenderer renderer;
+        private Overlay overlay;
+        private Tetris game;
+        private Board board;
+        private BufferedImage image;
+        private boolean drawn;
+        private boolean animating;
+        private long boardVersion, overlayVersion, hudVersion;
+
+        /**
+         * Constructs an entry for the given renderer.
+         * @param renderer  The renderer of the board
+         * @param overlay   The overlay drawn over the board
+         * @param game      The game the board belongs to (may be null)
+         */
+        public Entry(BoardRenderer renderer, Overlay overlay, Tetris game)
+        {
+            this.renderer = renderer;
+            this.overlay = overlay;
+            this.game = game;
+            board = renderer.getBoard();
+        }
+
+        /**
+         * Returns true if the board needs to be redrawn.
+         * @return  True if the board has changed since it was last drawn or is animating
+         */
+        public boolean isDirty()
+        {
+            return !drawn || animating || board.getVersion() != boardVersion
+                    || overlay.getVersion() != overlayVersion
+                    || overlay.getHud().getVersion() != hudVersion
+                    || overlay.isAnimating();
+        }
+
+        /**
+         * Redraws the board into its image and remembers what it was drawn at.
+         */
+        public void draw()
+        {
+            boardVersion = board.getVersion();
+            overlayVersion = overlay.getVersion();
+            hudVersion = overlay.getHud().getVersion();
+            animating = overlay.isAnimating();
+            if (game != null)
+                renderer.setHeldShape(game.getHeldShape());
+
+            Graphics2D g = image.createGraphics();
+            renderer.paint(g);
+            g.dispose();
+            drawn = true;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * A BoardConfig describes the geometry of a game of Tetris: the width and height of the
+ * playfield, and the layout of the side panel to the right of it that shows the upcoming
+ * tetrads and the held tetrad. Every position the game needs (the wall, the spawn location,
+ * the preview slots and the hold slot) is derived from it. The board only holds the playfield;
+ * the wall and the panel are drawn next to it by the display, in the same cell coordinates. Any
+ * rows of the panel below the hold slot are used for the HUD.
+ *
+ * The default configuration is the classic 10 x 20 playfield with four previews.
+ *
+ * @author Pranav Sukesh
+ * @version 3/24/2023
+ */
+public class BoardConfig
+{
+    private static final int PANEL_WIDTH = 6;
+    private static final int PREVIEW_SPACING = 3;
+
+    private int width;
+    private int height;
+    private int previewCount;
+
+    /**
+     * Constructs the classic configuration: a 10 x 20 playfield with four previews.
+     */
+    public BoardConfig()
+    {
+        this(10, 20, 4);
+    }
+
+    /**
+     * Constructs a configuration with the given playfield size and four previews.
+     * @param width     The number of columns in the playfield
+     * @param height    The number of rows in the playfield
+     */
+    public BoardConfig(int width, int height)
+    {
+        this(width, height, 4);
+    }
+
+    /**
+     * Constructs a configuration with the given playfield size and number of previews.
+     * @param width         The number of columns in the playfield (at least 4)
+     * @param height        The number of rows in the playfield (tall enough for the panel)
+     * @param previewCount  The number of upcoming tetrads shown in the side panel (at least 1)
+     */
+    public BoardConfig(int width, int height, int previewCount)
+    {
+        if (width < 4 || previewCount < 1)
+            throw new IllegalArgumentException("board too narrow or no previews");
+
+        this.width = width;
+        this.height = height;
+        this.previewCount = previewCount;
+
+        if (height < getHoldCenter().getRow() + 2)
+            throw new IllegalArgumentException("board too short for the side panel");
+    }
+
+    /**
+     * Returns the number of columns in the playfield.
+     * @return  The number of columns in the playfield
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows in the playfield.
+     * @return  The number of rows in the playfield
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the number of upcoming tetrads shown in the side panel.
+     * @return  The number of previews
+     */
+    public int getPreviewCount()
+    {
+        return previewCount;
+    }
+
+    /**
+     * Returns the total number of columns of the display: the playfield, the wall and the panel.
+     * @return  The number of columns of the display
+     */
+    public int getNumCols()
+    {
+        return width + 1 + PANEL_WIDTH;
+    }
+
+    /**
+     * Returns the column of the wall between the playfield and the side panel.
+     * @return  The column of the wall
+     */
+    public int getWallCol()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the first column of the side panel.
+     * @return  The first column of the side panel
+     */
+    public int getPanelCol()
+    {
+        return width + 1;
+    }
+
+    /**
+     * Returns the number of columns in the side panel.
+     * @return  The number of columns in the side panel
+     */
+    public int getPanelWidth()
+    {
+        return PANEL_WIDTH;
+    }
+
+    /**
+     * Returns the location new tetrads are spawned at.
+     * @return  The spawn location
+     */
+    public Location getSpawn()
+    {
+        return new Location(1, (width - 1) / 2);
+    }
+
+    /**
+     * Returns the center location of the given preview slot in the side panel.
+     * @param i     The preview slot (0 is the next tetrad)
+     * @return      The center location of the slot
+     */
+    public Location getPreviewCenter(int i)
+    {
+        return new Location(PREVIEW_SPACING * i + 2, width + 3);
+    }
+
+    /**
+     * Returns the row of the line dividing the previews from the hold slot.
+     * @return  The row of the divider
+     */
+    public int getDividerRow()
+    {
+        return PREVIEW_SPACING * previewCount + 1;
+    }
+
+    /**
+     * Returns the center location of the hold slot in the side panel.
+     * @return  The center location of the hold slot
+     */
+    public Location getHoldCenter()
+    {
+        return new Location(getDividerRow() + 3, width + 3);
+    }
+
+    /**
+     * Returns the first row of the HUD in the side panel, just below the hold slot. The HUD
+     * takes up every row from there to the bottom of the board.
+     * @return  The first row of the HUD
+     */
+    public int getHudRow()
+    {
+        return getHoldCenter().getRow() + 2;
+    }
+}
@@ -0,0 +1,423 @@
+import java.awt.*;
+
+/**
+ * A BoardRenderer paints a Board, the wall and side panel next to it, and the shadow, the
+ * animation effects and the particles of its Overlay onto any Graphics. It does not depend on
+ * a window, so the same painting is used by the BlockDisplay and for offscreen rendering.
+ *
+ * Cells are drawn by copying tiles from a TileAtlas, which is rebuilt only when the block size
+ * changes. The tiles can be turned off to paint each cell with fills instead, which is how the
+ * board used to be drawn. The time each paint takes is reported to the particle system, which
+ * sheds particles when painting goes over its budget, and to the quality controller, which
+ * decides which effects are drawn at all.
+ *
+ * @author Pranav Sukesh
+ * @version 3/29/2023
+ */
+public class BoardRenderer
+{
+    public static final Color BACKGROUND = new Color(30,30,30,255);
+    public static final Color BORDER = Color.BLACK;
+    public static final int OUTLINE = 2;
+
+    /**
+     * Returns the width of the gap between blocks for the given block size. It is OUTLINE at
+     * the normal 20 pixel block size and grows with bigger blocks.
+     * @param blockSize The size of a cell in pixels
+     * @return          The width of the gap in pixels (always even)
+     */
+    public static int outlineFor(int blockSize)
+    {
+        return Math.max(OUTLINE, blockSize / 20 * 2);
+    }
+
+    private Board board;
+    private BoardConfig config;
+    private Overlay overlay;
+    private PieceQueue preview;
+    private volatile int heldShape;
+
+    private int blockSize;
+    private int outline;
+    private boolean useTiles;
+    private TileAtlas atlas;
+    private CellPainter cellPainter;
+    private Color[] fadeColors;
+
+    /**
+     * Constructs a renderer for the given board.
+     * @param board     The board to paint
+     * @param config    The layout of the wall and side panel (null to paint only the board)
+     * @param overlay   The overlay of shadow and trail cells to paint over the board
+     * @param blockSize The size of a cell in pixels
+     */
+    public BoardRenderer(Board board, BoardConfig config, Overlay overlay, int blockSize)
+    {
+        this.board = board;
+        this.config = config;
+        this.overlay = overlay;
+        setBlockSize(blockSize);
+        heldShape = -1;
+        useTiles = true;
+        cellPainter = new CellPainter();
+        fadeColors = new Color[TileAtlas.FADE_LEVELS];
+        for (int i = 0; i < fadeColors.length; i++)
+            fadeColors[i] = TileAtlas.fadeColor(i);
+    }
+
+    /**
+     * Returns the board this renderer paints.
+     * @return  The board this renderer paints
+     */
+    public Board getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Sets the queue of upcoming shapes shown in the side panel.
+     * @param preview   The queue of upcoming shapes
+     */
+    public void setPreview(PieceQueue preview)
+    {
+        this.preview = preview;
+    }
+
+    /**
+     * Sets the shape shown in the hold slot of the side panel.
+     * @param shape The held shape, or -1 for none
+     */
+    public void setHeldShape(int shape)
+    {
+        heldShape = shape;
+    }
+
+    /**
+     * Sets the size of a cell in pixels. The tiles are rebuilt at the next paint.
+     * @param blockSize The size of a cell in pixels
+     */
+    public void setBlockSize(int blockSize)
+    {
+        this.blockSize = blockSize;
+        outline = outlineFor(blockSize);
+    }
+
+    /**
+     * Returns the size of a cell in pixels.
+     * @return  The size of a cell in pixels
+     */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * Makes this renderer draw from the given atlas, which may be shared with other renderers.
+     * The block size becomes the size of the atlas's tiles.
+     * @param atlas The atlas to draw from
+     */
+    public void setAtlas(TileAtlas atlas)
+    {
+        this.atlas = atlas;
+        setBlockSize(atlas.getBlockSize());
+    }
+
+    /**
+     * Sets whether cells are drawn from the tile atlas (true) or with fills (false).
+     * @param useTiles  True to draw cells from the tile atlas
+     */
+    public void setUseTiles(boolean useTiles)
+    {
+        this.useTiles = useTiles;
+    }
+
+    /**
+     * Returns the number of columns painted, including the wall and side panel.
+     * @return  The number of columns painted
+     */
+    public int getNumCols()
+    {
+        return config != null ? config.getNumCols() : board.getNumCols();
+    }
+
+    /**
+     * Returns the number of rows painted.
+     * @return  The number of rows painted
+     */
+    public int getNumRows()
+    {
+        return board.getNumRows();
+    }
+
+    /**
+     * Returns the width of the painted area in pixels.
+     * @return  The width in pixels
+     */
+    public int getWidth()
+    {
+        return blockSize * getNumCols() + outline;
+    }
+
+    /**
+     * Returns the height of the painted area in pixels.
+     * @return  The height in pixels
+     */
+    public int getHeight()
+    {
+        return blockSize * getNumRows();
+    }
+
+    /**
+     * Paints the board, the side panel and the overlay with the top left corner at (0, 0).
+     * @param g The graphics to paint with
+     */
+    public void paint(Graphics g)
+    {
+        if (useTiles && (atlas == null || atlas.getBlockSize() != blockSize))
+        {
+            GraphicsConfiguration gc = g instanceof Graphics2D
+                    ? ((Graphics2D) g).getDeviceConfiguration() : null;
+            atlas = new TileAtlas(blockSize, gc);
+        }
+
+        long start = System.nanoTime();
+
+        g.setColor(BORDER);
+        g.fillRect(0, 0, getWidth(), getHeight());
+
+        // only the occupied cells are visited, the border color covers the rest
+        cellPainter.g = g;
+        board.forEachOccupied(cellPainter);
+        cellPainter.g = null;
+
+        if (config != null)
+            paintPanel(g);
+
+        paintOverlay(g);
+        if (overlay.getQuality().showParticles())
+            paintParticles(g);
+
+        long time = System.nanoTime() - start;
+        overlay.getParticles().reportFrameTime(time);
+        overlay.getQuality().recordPaint(time);
+    }
+
+    /**
+     * Draws the wall, the upcoming shapes, the held shape and the HUD to the right of the
+     * board. The panel is not part of the board, so the shapes are drawn straight from their
+     * offsets.
+     * @param g The graphics to paint with
+     */
+    private void paintPanel(Graphics g)
+    {
+        if (useTiles)
+            g.drawImage(atlas.getWallColumn(getNumRows()), config.getWallCol() * blockSize, 0,
+                    null);
+        else
+            for (int row = 0; row < getNumRows(); row++)
+                paintBlock(g, row, config.getWallCol(), Board.WALL);
+
+        for (int i = 0; i < config.getPanelWidth(); i++)
+            paintBlock(g, config.getDividerRow(), config.getPanelCol() + i, Board.WALL);
+
+        if (preview != null)
+            for (int i = 0; i < config.getPreviewCount(); i++)
+                paintShape(g, preview.peek(i), config.getPreviewCenter(i));
+
+        paintShape(g, heldShape, config.getHoldCenter());
+
+        overlay.getHud().paint(g, config.getPanelCol() * blockSize,
+                config.getHudRow() * blockSize, config.getPanelWidth() * blockSize,
+                (getNumRows() - config.getHudRow()) * blockSize);
+    }
+
+    /**
+     * Draws a tetrad of the given shape, facing north, around the given center.
+     * @param g         The graphics to paint with
+     * @param shape     The shape to draw, or -1 for none
+     * @param center    The location of the center block
+     */
+    private void paintShape(Graphics g, int shape, Location center)
+    {
+        if (shape < 0)
+            return;
+
+        for (int i = 0; i < 4; i++)
+            paintBlock(g, center.getRow() + Tetrad.getRowOffset(shape, i),
+                    center.getCol() + Tetrad.getColOffset(shape, i), Board.pieceCode(shape));
+    }
+
+    /**
+     * Draws a single block with the given cell code.
+     * @param g     The graphics to paint with
+     * @param row   The row of the block
+     * @param col   The column of the block
+     * @param code  The cell code of the block
+     */
+    private void paintBlock(Graphics g, int row, int col, byte code)
+    {
+        if (useTiles)
+        {
+            atlas.drawTile(g, code, col * blockSize, row * blockSize);
+            return;
+        }
+
+        g.setColor(Palette.colorOf(code));
+        g.fillRect(col * blockSize + outline/2 + (blockSize) / 5,
+                row * blockSize + outline/2 + (blockSize) / 5,
+                blockSize*3/5 - 1, blockSize*3/5 - 1);
+        g.fillRect(col * blockSize + outline / 2, row * blockSize + outline / 2,
+                blockSize - outline, blockSize - outline);
+    }
+
+    /**
+     * Draws the shadow cells and the effects of the overlay's timeline over the board.
+     * @param g The graphics to paint with
+     */
+    private void paintOverlay(Graphics g)
+    {
+        Timeline timeline = overlay.getTimeline();
+        boolean trails = overlay.getQuality().showTrails();
+        boolean flashes = overlay.getQuality().showFlashes();
+        synchronized (timeline)
+        {
+            for (int i = 0; i < timeline.getCount(); i++)
+            {
+                int kind = timeline.getKind(i);
+                if (kind == Timeline.FLASH ? !flashes : !trails)
+                    continue;
+                if (kind == Timeline.TRAIL)
+                    paintTrail(g, timeline.getArgA(i), timeline.getArgB(i), timeline.getArgC(i),
+                            timeline.getStep(i, TileAtlas.FADE_LEVELS));
+                else if (kind == Timeline.LINE_CLEAR)
+                    paintLineClear(g, timeline.getArgA(i),
+                            timeline.getStep(i, TileAtlas.FADE_LEVELS + 1));
+                else
+                    for (int j = 0; j < timeline.getArgA(i); j++)
+                    {
+                        int row = timeline.getCellRow(i, j);
+                        int col = timeline.getCellCol(i, j);
+                        if (!board.isEmpty(row, col))
+                            paintBlock(g, row, col, Board.FLASH);
+                    }
+            }
+        }
+
+        synchronized (overlay)
+        {
+            g.setColor(Tetrad.SHADOW);
+            for (int i = 0; i < overlay.getShadowCount(); i++)
+            {
+                int row = overlay.getShadowRow(i);
+                int col = overlay.getShadowCol(i);
+                if (!board.isEmpty(row, col))
+                    continue;
+                if (useTiles)
+                    atlas.drawTile(g, TileAtlas.SHADOW_TILE, col * blockSize, row * blockSize);
+                else
+                    g.fillRect(col * blockSize + outline / 2, row * blockSize + outline / 2,
+                            blockSize - outline, blockSize - outline);
+            }
+        }
+    }
+
+    /**
+     * Draws the particles of the overlay that are over the board.
+     * @param g The graphics to paint with
+     */
+    private void paintParticles(Graphics g)
+    {
+        ParticleSystem particles = overlay.getParticles();
+        int size = useTiles ? atlas.getParticleSize() : Math.max(2, blockSize / 5);
+        synchronized (particles)
+        {
+            for (int i = 0; i < particles.getCount(); i++)
+            {
+                float x = particles.getX(i);
+                float y = particles.getY(i);
+                if (x < 0 || x >= board.getNumCols() || y < 0)
+                    continue;
+                int px = (int) (x * blockSize) - size / 2;
+                int py = (int) (y * blockSize) - size / 2;
+                if (useTiles)
+                    atlas.drawParticle(g, particles.getCode(i), px, py);
+                else
+                {
+                    g.setColor(Palette.colorOf(particles.getCode(i)));
+                    g.fillRect(px, py, size, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a trail over the empty cells of the given columns, from the top of the board down
+     * to (but not including) the given row.
+     * @param g     The graphics to paint with
+     * @param min   The leftmost column of the trail
+     * @param size  The number of columns in the trail
+     * @param end   The row the trail ends at
+     * @param level The step of the trail's fade
+     */
+    private void paintTrail(Graphics g, int min, int size, int end, int level)
+    {
+        for (int col = min; col < min + size; col++)
+            for (int row = 0; row < end; row++)
+                paintFade(g, row, col, level);
+    }
+
+    /**
+     * Draws the glow of a cleared line over the empty cells of the given row. It starts as a
+     * white flash and then fades out like a trail.
+     * @param g     The graphics to paint with
+     * @param row   The row that was cleared
+     * @param step  The step of the glow (0 is the flash)
+     */
+    private void paintLineClear(Graphics g, int row, int step)
+    {
+        for (int col = 0; col < board.getNumCols(); col++)
+        {
+            if (step == 0)
+            {
+                if (board.isEmpty(row, col))
+                    paintBlock(g, row, col, Board.FLASH);
+            }
+            else
+                paintFade(g, row, col, step - 1);
+        }
+    }
+
+    /**
+     * Draws a step of the trail's fade over a cell, if the cell is empty.
+     * @param g     The graphics to paint with
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @param level The step of the fade
+     */
+    private void paintFade(Graphics g, int row, int col, int level)
+    {
+        if (!board.isEmpty(row, col))
+            return;
+        if (useTiles)
+            atlas.drawTile(g, TileAtlas.TRAIL_TILE + level, col * blockSize, row * blockSize);
+        else
+        {
+            g.setColor(fadeColors[level]);
+            g.fillRect(col * blockSize, row * blockSize, blockSize, blockSize);
+        }
+    }
+
+    /**
+     * Paints each occupied cell it visits with the graphics it was given. One instance is
+     * reused for every paint so that drawing the board does not allocate.
+     */
+    private class CellPainter implements CellVisitor
+    {
+        private Graphics g;
+
+        public void visit(int row, int col)
+        {
+            paintBlock(g, row, col, board.get(row, col));
+        }
+    }
+}
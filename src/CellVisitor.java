@@ -0,0 +1,17 @@
+/**
+ * A CellVisitor is called once for each occupied cell of a grid or board, given the row and
+ * column of the cell. It lets callers walk the occupied cells without building a list of
+ * Locations.
+ *
+ * @author Pranav Sukesh
+ * @version 3/22/2023
+ */
+public interface CellVisitor
+{
+    /**
+     * Visits an occupied cell.
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     */
+    void visit(int row, int col);
+}
@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Counter is a named count of something that happens while the game runs, such as frames
+ * stepped or lines cleared. It is backed by a LongAdder, which spreads increments from
+ * different threads over separate cells, so counting costs a few nanoseconds and threads never
+ * wait on each other. Counters are made and listed by Metrics.
+ *
+ * @author Pranav Sukesh
+ * @version 4/9/2023
+ */
+public class Counter
+{
+    private String name;
+    private String help;
+    private LongAdder count;
+
+    /**
+     * Constructs a counter at zero.
+     * @param name  The name of the counter, in the style of Prometheus (tetris_..._total)
+     * @param help  A short description of what is counted
+     */
+    public Counter(String name, String help)
+    {
+        this.name = name;
+        this.help = help;
+        count = new LongAdder();
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment()
+    {
+        count.increment();
+    }
+
+    /**
+     * Adds the given amount to the count.
+     * @param n     The amount to add
+     */
+    public void add(long n)
+    {
+        count.add(n);
+    }
+
+    /**
+     * Returns the count.
+     * @return  The count
+     */
+    public long get()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Returns the name of the counter.
+     * @return  The name of the counter
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the description of the counter.
+     * @return  The description of what is counted
+     */
+    public String getHelp()
+    {
+        return help;
+    }
+}
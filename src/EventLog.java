@@ -0,0 +1,331 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An EventLog writes every event of a game to a binary file for postmortems: inputs, spawns,
+ * locks, line clears, level changes, sounds and the end of the game, each with the time and
+ * frame it happened in. EventLogReader turns a log back into a timeline.
+ *
+ * Logging an event never waits for the disk, or for another thread. Events are encoded as
+ * fixed-size records into one of BUFFERS direct buffers allocated up front. When the buffer
+ * fills, it is put on a lock-free queue for a background writer thread and the next free buffer
+ * is taken. The writer takes every full buffer waiting at once, writes them with a single
+ * gathering write, and puts them back on the free queue. If the writer falls so far behind that
+ * no buffer is free, events are dropped and counted instead, and a DROPPED record with the count
+ * is logged as soon as a buffer frees up, so the timeline shows where the gap is.
+ *
+ * Events are logged by the game thread, but also by the thread playing a sound and by the
+ * shutdown hook closing the log, and the writer takes a buffer that has been partly filled for
+ * FLUSH_NANOS, so a quiet game still reaches the disk. Only one thread at a time encodes, the
+ * one that sets the busy flag. A thread that finds it set does not wait: it posts its event on a
+ * lock-free queue, and the thread encoding logs the posted events before it lets go.
+ *
+ * The file starts with a header of HEADER_SIZE bytes: a magic number, the version, the seed of
+ * the game and the width and height of its board. Each record that follows is RECORD_SIZE bytes:
+ * the nanoseconds since the log was opened (long), the frame (int), the type (byte), and two
+ * values whose meaning depends on the type (a byte and a short).
+ *
+ * @author Pranav Sukesh
+ * @version 4/14/2023
+ */
+public class EventLog
+{
+    public static final int INPUT = 1;
+    public static final int SPAWN = 2;
+    public static final int LOCK = 3;
+    public static final int CLEAR = 4;
+    public static final int LEVEL = 5;
+    public static final int AUDIO = 6;
+    public static final int GAME_OVER = 7;
+    public static final int DROPPED = 8;
+
+    public static final int CLEAR_SOUND = 0;
+    public static final int DROP_SOUND = 1;
+
+    public static final int MAGIC = 0x54455654;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 16;
+    public static final int BUFFER_SIZE = 1024 * RECORD_SIZE;
+    public static final int BUFFERS = 8;
+    public static final long FLUSH_NANOS = 1000000000L;
+    public static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private FileChannel channel;
+    private ConcurrentLinkedQueue<ByteBuffer> free, full;
+    private ByteBuffer current;
+    private long start, lastHandOff;
+    private long dropped;
+    private volatile long totalDropped;
+    private int lastFrame;
+    private AtomicBoolean busy;
+    private ConcurrentLinkedQueue<long[]> posted;
+    private Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Opens a new log, replacing the file if it exists, and starts its writer.
+     * @param file      The file to write
+     * @param seed      The seed of the game
+     * @param config    The geometry of the board of the game
+     * @throws IOException  If the file cannot be written
+     */
+    public EventLog(File file, long seed, BoardConfig config) throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(config.getWidth())
+                .putInt(config.getHeight()).flip();
+        while (header.hasRemaining())
+            channel.write(header);
+
+        free = new ConcurrentLinkedQueue<ByteBuffer>();
+        full = new ConcurrentLinkedQueue<ByteBuffer>();
+        for (int i = 0; i < BUFFERS; i++)
+            free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        busy = new AtomicBoolean();
+        posted = new ConcurrentLinkedQueue<long[]>();
+        start = System.nanoTime();
+        lastHandOff = start;
+
+        writer = new Thread(this::write, "EventLog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Logs an event. If no buffer is free, the event is dropped and counted. If another thread
+     * is encoding, the event is posted for it to log instead.
+     * @param type  The type of the event (INPUT, SPAWN and so on)
+     * @param frame The frame of the game the event happened in
+     * @param arg   The first value of the event (0 - 255)
+     * @param value The second value of the event (a short)
+     */
+    public void record(int type, int frame, int arg, int value)
+    {
+        if (closed)
+            return;
+        long now = System.nanoTime();
+        if (busy.compareAndSet(false, true))
+        {
+            encodePosted();
+            encode(now, frame, type, arg, value);
+            release();
+        }
+        else
+        {
+            posted.add(new long[] {now, frame, type, arg, value});
+            if (busy.compareAndSet(false, true))
+                release();
+        }
+    }
+
+    /**
+     * Encodes an event into the current buffer, taking a free one first if there is none, and
+     * hands the buffer off once it is full. This is only called with the busy flag set.
+     * @param now   The time of the event
+     * @param frame The frame of the event
+     * @param type  The type of the event
+     * @param arg   The first value of the event
+     * @param value The second value of the event
+     */
+    private void encode(long now, int frame, int type, int arg, int value)
+    {
+        lastFrame = frame;
+        if (current == null && !takeBuffer(now, frame))
+        {
+            dropped++;
+            totalDropped++;
+            Metrics.EVENTS_DROPPED.increment();
+            return;
+        }
+        put(now, frame, type, arg, value);
+        if (!current.hasRemaining())
+            handOff(now);
+    }
+
+    /**
+     * Encodes the events other threads posted while the busy flag was set.
+     */
+    private void encodePosted()
+    {
+        long[] event;
+        while ((event = posted.poll()) != null)
+            encode(event[0], (int) event[1], (int) event[2], (int) event[3], (int) event[4]);
+    }
+
+    /**
+     * Encodes the posted events and clears the busy flag, setting it again to encode any posted
+     * after the last check, so none is left behind with no thread to encode it.
+     */
+    private void release()
+    {
+        do
+        {
+            encodePosted();
+            busy.set(false);
+        }
+        while (!posted.isEmpty() && busy.compareAndSet(false, true));
+    }
+
+    /**
+     * Takes a free buffer to encode into, first logging how many events were dropped while
+     * there was none (in as many records as the count needs).
+     * @param now   The time now
+     * @param frame The frame of the game
+     * @return      True if a buffer was free, false otherwise
+     */
+    private boolean takeBuffer(long now, int frame)
+    {
+        current = free.poll();
+        if (current == null)
+            return false;
+        while (dropped > 0)
+        {
+            int count = (int) Math.min(dropped, Short.MAX_VALUE);
+            put(now, frame, DROPPED, 0, count);
+            dropped -= count;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a record into the current buffer.
+     * @param now   The time of the event
+     * @param frame The frame of the event
+     * @param type  The type of the event
+     * @param arg   The first value of the event
+     * @param value The second value of the event
+     */
+    private void put(long now, int frame, int type, int arg, int value)
+    {
+        current.putLong(now - start).putInt(frame).put((byte) type).put((byte) arg)
+                .putShort((short) value);
+    }
+
+    /**
+     * Hands the current buffer to the writer.
+     * @param now   The time now
+     */
+    private void handOff(long now)
+    {
+        current.flip();
+        full.add(current);
+        current = null;
+        lastHandOff = now;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Hands the current buffer to the writer if it has events and has not been handed off for
+     * FLUSH_NANOS. Nothing is done if another thread is encoding.
+     */
+    private void flushStale()
+    {
+        if (!busy.compareAndSet(false, true))
+            return;
+        long now = System.nanoTime();
+        if (current != null && current.position() > 0 && now - lastHandOff > FLUSH_NANOS)
+            handOff(now);
+        release();
+    }
+
+    /**
+     * Writes the full buffers to the file until the log is closed, as many at once as are
+     * waiting, and puts them back on the free queue. A buffer that has been partly filled for
+     * FLUSH_NANOS is taken when there is nothing else to write.
+     */
+    private void write()
+    {
+        ByteBuffer[] batch = new ByteBuffer[BUFFERS];
+        try
+        {
+            while (true)
+            {
+                int n = 0;
+                long bytes = 0;
+                ByteBuffer b;
+                while (n < BUFFERS && (b = full.poll()) != null)
+                {
+                    bytes += b.remaining();
+                    batch[n++] = b;
+                }
+                if (n == 0)
+                {
+                    if (closed && full.isEmpty())
+                        break;
+                    LockSupport.parkNanos(FLUSH_NANOS);
+                    if (!closed)
+                        flushStale();
+                    continue;
+                }
+                while (bytes > 0)
+                    bytes -= channel.write(batch, 0, n);
+                for (int i = 0; i < n; i++)
+                {
+                    batch[i].clear();
+                    free.add(batch[i]);
+                    batch[i] = null;
+                }
+            }
+            channel.force(false);
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("event log: " + e);
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because no buffer was free.
+     * @return  The number of events dropped
+     */
+    public long getDropped()
+    {
+        return totalDropped;
+    }
+
+    /**
+     * Hands off the events logged so far, waits for the writer to write them, and closes the
+     * file. If events were dropped since the last buffer was taken, waits for a free buffer to
+     * log how many. Neither wait is longer than CLOSE_TIMEOUT_MILLIS, and a writer that has
+     * stopped on an error is not waited for at all, so closing never hangs. Events logged after
+     * this are ignored. Close is called once, from one thread.
+     */
+    public void close()
+    {
+        if (closed)
+            return;
+        closed = true;
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_MILLIS * 1000000L;
+        while (!busy.compareAndSet(false, true))
+        {
+            //another thread is encoding an event, which takes microseconds
+            Thread.onSpinWait();
+        }
+        encodePosted();
+        while (current == null && dropped > 0 && writer.isAlive()
+                && System.nanoTime() < deadline && !takeBuffer(System.nanoTime(), lastFrame))
+            LockSupport.parkNanos(1000000);
+        if (current != null && current.position() > 0)
+            handOff(System.nanoTime());
+        release();
+        LockSupport.unpark(writer);
+        try
+        {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e)
+        {
+            //the writer goes on as a daemon
+        }
+    }
+}
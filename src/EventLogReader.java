@@ -0,0 +1,116 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * An EventLogReader decodes a log written by an EventLog back into a timeline of the game, one
+ * line per event with its frame, the seconds since the log was opened, its type and what it
+ * means, followed by the number of events of each type.
+ *
+ * Usage: java EventLogReader file [file...]
+ *
+ * @author Pranav Sukesh
+ * @version 4/14/2023
+ */
+public class EventLogReader
+{
+    private static final String[] TYPES = {"?", "INPUT", "SPAWN", "LOCK", "CLEAR", "LEVEL",
+        "AUDIO", "GAME_OVER", "DROPPED"};
+    private static final String[] ACTIONS = {"LEFT", "RIGHT", "DOWN", "ROTATE_CW", "ROTATE_CCW",
+        "HARD_DROP", "HOLD", "GARBAGE"};
+    private static final String SHAPES = "ITOZLRJ";
+    private static final String[] SOUNDS = {"clear", "drop"};
+
+    /**
+     * Prints the timeline of each log given.
+     * @param args  The files of the logs
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("usage: java EventLogReader file [file...]");
+            System.exit(1);
+        }
+        for (String name : args)
+            print(new File(name));
+    }
+
+    /**
+     * Prints the timeline of a log.
+     * @param file  The file of the log
+     * @throws IOException  If the file cannot be read or is not an event log
+     */
+    public static void print(File file) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buf.limit() < EventLog.HEADER_SIZE || buf.getInt(0) != EventLog.MAGIC)
+            throw new IOException(file + " is not an event log");
+        System.out.printf("%s: version %d, seed %d, %d x %d board%n", file, buf.getInt(4),
+                buf.getLong(8), buf.getInt(16), buf.getInt(20));
+        System.out.println("   frame     seconds  event      details");
+
+        int[] counts = new int[TYPES.length];
+        for (int p = EventLog.HEADER_SIZE; p + EventLog.RECORD_SIZE <= buf.limit();
+             p += EventLog.RECORD_SIZE)
+        {
+            long nanos = buf.getLong(p);
+            int frame = buf.getInt(p + 8);
+            int type = buf.get(p + 12);
+            int arg = buf.get(p + 13) & 0xFF;
+            int value = buf.getShort(p + 14);
+            if (type <= 0 || type >= TYPES.length)
+                type = 0;
+            counts[type]++;
+            System.out.printf("%8d  %10.6f  %-9s  %s%n", frame, nanos / 1e9, TYPES[type],
+                    describe(type, arg, value));
+        }
+
+        StringBuilder summary = new StringBuilder();
+        for (int t = 1; t < TYPES.length; t++)
+            summary.append(TYPES[t]).append(' ').append(counts[t]).append("  ");
+        if (counts[0] > 0)
+            summary.append("unknown ").append(counts[0]);
+        System.out.println(summary.toString().trim());
+    }
+
+    /**
+     * Describes the values of a record.
+     * @param type  The type of the record
+     * @param arg   The first value
+     * @param value The second value
+     * @return      What the values mean
+     */
+    private static String describe(int type, int arg, int value)
+    {
+        if (type == EventLog.INPUT)
+        {
+            String action = arg < ACTIONS.length ? ACTIONS[arg] : "action " + arg;
+            return arg == Replay.GARBAGE ? action + " x" + value : action;
+        }
+        if (type == EventLog.SPAWN)
+            return shape(arg);
+        if (type == EventLog.LOCK)
+            return shape(arg) + (value != 0 ? " (hard drop)" : "");
+        if (type == EventLog.CLEAR)
+            return arg + " rows, combo " + value;
+        if (type == EventLog.LEVEL)
+            return "level " + value;
+        if (type == EventLog.AUDIO)
+            return arg < SOUNDS.length ? SOUNDS[arg] : "sound " + arg;
+        if (type == EventLog.DROPPED)
+            return value + " events dropped before this";
+        return "";
+    }
+
+    /**
+     * Returns the letter of a shape.
+     * @param shape The shape (0 - 6)
+     * @return      The letter of the shape
+     */
+    private static String shape(int shape)
+    {
+        return shape < SHAPES.length() ? SHAPES.substring(shape, shape + 1) : "?";
+    }
+}
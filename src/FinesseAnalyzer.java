@@ -0,0 +1,445 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A FinesseAnalyzer tells a player when a tetrad was placed with more inputs than needed. When a
+ * tetrad locks, the game hands the analyzer the board, the shape, where the tetrad ended up and
+ * how many inputs were spent on it, and the analyzer finds the fewest inputs that reach the same
+ * place from the spawn location. Spending more than that is a finesse fault, which is recorded
+ * in the PlayerStats of the game.
+ *
+ * The fewest inputs are found by a breadth-first search over the positions of the tetrad (its
+ * center row, center column and direction), with one step for each of moving left, right or
+ * down and rotating clockwise or counterclockwise. The moves follow the game exactly, including
+ * the wall kicks of a blocked rotation and counterclockwise being three clockwise rotations.
+ * From every position reached the tetrad is dropped, and the first position that lands where
+ * the tetrad locked gives the answer. The hard drop itself is not counted, on either side.
+ *
+ * Most placements are made on a board whose stack is well below the spawn location, with
+ * nothing above the place the tetrad lands; there, the answer is the same as on an empty board.
+ * For each shape, the empty-board answer of every placement is worked out once, keyed by the
+ * pattern of the placed blocks and their columns, and shared by every game on a board of the
+ * same size. Other placements, such as tucks under an overhang, are searched on demand.
+ *
+ * The analysis runs on a single background thread, so the game thread only copies the board
+ * and goes on to spawn the next tetrad. If the analysis ever falls QUEUE_SIZE placements
+ * behind, further placements are skipped rather than queued.
+ *
+ * @author Pranav Sukesh
+ * @version 4/12/2023
+ */
+public class FinesseAnalyzer
+{
+    public static final int QUEUE_SIZE = 64;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 0,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), r -> {
+                Thread t = new Thread(r, "Finesse");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+    private static final ConcurrentHashMap<String, Table> TABLES =
+            new ConcurrentHashMap<String, Table>();
+
+    private BoardConfig config;
+    private PlayerStats stats;
+
+    /**
+     * Constructs an analyzer for a game on a board of the given configuration, and starts
+     * working out the empty-board tables of its size in the background.
+     * @param config    The geometry of the board
+     * @param stats     The statistics the results are recorded in
+     */
+    public FinesseAnalyzer(BoardConfig config, PlayerStats stats)
+    {
+        this.config = config;
+        this.stats = stats;
+        stats.useAnalyzer();
+        EXECUTOR.execute(() -> {
+            for (int shape = 0; shape < 7; shape++)
+                table(shape, config.getHeight(), config.getWidth(), config.getSpawn());
+        });
+    }
+
+    /**
+     * Queues a locked tetrad for analysis. The board is copied before this returns, so the game
+     * can go on changing it.
+     * @param grid      The board, with the locked tetrad in it
+     * @param shape     The shape of the tetrad (0 - 6)
+     * @param placement The locations of the blocks of the locked tetrad
+     * @param inputs    The moves and rotations spent on the tetrad
+     */
+    public void submit(Board grid, int shape, Location[] placement, int inputs)
+    {
+        Board board = grid.copy();
+        for (Location l : placement)
+            board.set(l, Board.EMPTY);
+        Location spawn = config.getSpawn();
+        EXECUTOR.execute(() -> {
+            int needed = minimumInputs(board, shape, spawn, placement);
+            if (needed >= 0)
+                stats.onFinesse(inputs, needed);
+        });
+    }
+
+    /**
+     * Returns the fewest moves and rotations that take a tetrad from the spawn location to a
+     * place from which it drops onto the given placement.
+     * @param board     The board, without the tetrad in it
+     * @param shape     The shape of the tetrad (0 - 6)
+     * @param spawn     The location the tetrad spawns at, facing north
+     * @param placement The locations of the blocks of the placed tetrad
+     * @return          The fewest inputs, or -1 if the placement cannot be reached
+     */
+    public static int minimumInputs(Board board, int shape, Location spawn,
+                                    Location[] placement)
+    {
+        int rows = board.getNumRows();
+        int cols = board.getNumCols();
+        Table table = table(shape, rows, cols, spawn);
+        if (table.covers(board, placement))
+        {
+            Integer n = table.minimum.get(patternKey(placement));
+            if (n != null)
+                return n;
+        }
+
+        int[] target = new int[4];
+        for (int i = 0; i < 4; i++)
+            target[i] = placement[i].getRow() * cols + placement[i].getCol();
+        sort(target);
+        return new Search(board, shape, true).run(spawn, target);
+    }
+
+    /**
+     * Returns the empty-board table of a shape on a board of the given size, working it out
+     * the first time it is asked for.
+     * @param shape The shape (0 - 6)
+     * @param rows  The number of rows of the board
+     * @param cols  The number of columns of the board
+     * @param spawn The spawn location
+     * @return      The table
+     */
+    private static Table table(int shape, int rows, int cols, Location spawn)
+    {
+        String key = shape + ":" + rows + "x" + cols + "@" + spawn.getRow() + ","
+                + spawn.getCol();
+        return TABLES.computeIfAbsent(key, k -> new Table(shape, rows, cols, spawn));
+    }
+
+    /**
+     * Returns a key for the pattern of the given blocks and their columns, which is the same
+     * wherever the blocks are dropped in those columns.
+     * @param locs  The locations of the blocks
+     * @return      The key of the pattern
+     */
+    private static long patternKey(Location[] locs)
+    {
+        int top = Integer.MAX_VALUE;
+        for (Location l : locs)
+            top = Math.min(top, l.getRow());
+        int[] cells = new int[locs.length];
+        for (int i = 0; i < locs.length; i++)
+            cells[i] = (locs[i].getRow() - top) << 14 | locs[i].getCol();
+        sort(cells);
+        long key = 0;
+        for (int cell : cells)
+            key = key << 16 | cell;
+        return key;
+    }
+
+    /**
+     * Sorts four numbers in place.
+     * @param a The numbers
+     */
+    private static void sort(int[] a)
+    {
+        for (int i = 1; i < a.length; i++)
+        {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= 0 && a[j] > v)
+            {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    /**
+     * A Search is one breadth-first search over the positions of a tetrad on a board. A
+     * position is numbered (direction * rows + row) * cols + col, by the row and column of the
+     * center block.
+     */
+    private static class Search
+    {
+        private Board board;
+        private int rows, cols;
+        private int[][][] offsets;
+        private int[] dist;
+        private int[] queue;
+        private int[] landing;
+        private int deepest;
+        private boolean down;
+
+        /**
+         * Constructs a search for a tetrad of the given shape on the given board.
+         * @param board The board, without the tetrad in it
+         * @param shape The shape of the tetrad (0 - 6)
+         * @param down  True if moving down is one of the inputs searched
+         */
+        public Search(Board board, int shape, boolean down)
+        {
+            this.board = board;
+            this.down = down;
+            rows = board.getNumRows();
+            cols = board.getNumCols();
+            offsets = new int[4][4][2];
+            for (int i = 0; i < 4; i++)
+            {
+                int dr = Tetrad.getRowOffset(shape, i);
+                int dc = Tetrad.getColOffset(shape, i);
+                for (int d = 0; d < 4; d++)
+                {
+                    offsets[d][i][0] = dr;
+                    offsets[d][i][1] = dc;
+                    //one clockwise turn takes {row, column} to {column, -row}
+                    int t = dr;
+                    dr = dc;
+                    dc = -t;
+                }
+            }
+            if (shape == 2)
+                offsets = new int[][][] {offsets[0], null, null, null};
+            dist = new int[4 * rows * cols];
+            queue = new int[dist.length];
+            landing = new int[4];
+        }
+
+        /**
+         * Searches from the spawn location, stopping at the first position that drops onto the
+         * target, or going through every position if there is no target.
+         * @param spawn     The spawn location
+         * @param target    The sorted cell numbers (row * cols + col) of the placement, or null
+         * @return          The inputs to the first position that drops onto the target, or -1
+         */
+        public int run(Location spawn, int[] target)
+        {
+            Arrays.fill(dist, -1);
+            int start = spawn.getRow() * cols + spawn.getCol();
+            if (!fits(0, spawn.getRow(), spawn.getCol()))
+                return -1;
+            int head = 0;
+            int tail = 0;
+            dist[start] = 0;
+            queue[tail++] = start;
+            while (head < tail)
+            {
+                int state = queue[head++];
+                drop(state);
+                if (target != null && Arrays.equals(landing, target))
+                    return dist[state];
+                visit(state);
+                for (int input = 0; input < 5; input++)
+                {
+                    int n;
+                    if (input == 0)
+                        n = move(state, 0, -1);
+                    else if (input == 1)
+                        n = move(state, 0, 1);
+                    else if (input == 2)
+                        n = down ? move(state, 1, 0) : state;
+                    else if (input == 3)
+                        n = rotate(state);
+                    else
+                        n = rotate(rotate(rotate(state)));
+                    if (dist[n] < 0)
+                    {
+                        dist[n] = dist[state] + 1;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Called on every position reached, in order of the inputs needed to reach it.
+         * @param state The position
+         */
+        protected void visit(int state)
+        {
+            //nothing more to do in a plain search
+        }
+
+        /**
+         * Returns the number of inputs needed to reach a position, once it has been searched.
+         * @param state The position
+         * @return      The inputs, or -1 if it was not reached
+         */
+        public int getDistance(int state)
+        {
+            return dist[state];
+        }
+
+        /**
+         * Returns the blocks of the tetrad dropped from the last position passed to drop.
+         * @return  The sorted cell numbers (row * cols + col) of the blocks
+         */
+        public int[] getLanding()
+        {
+            return landing;
+        }
+
+        /**
+         * Returns the lowest row any block reaches in the positions visited so far.
+         * @return  The lowest row
+         */
+        public int getDeepest()
+        {
+            return deepest;
+        }
+
+        /**
+         * Determines whether the tetrad fits at the given position.
+         * @param d     The direction (0 - 3, clockwise from north)
+         * @param row   The row of the center block
+         * @param col   The column of the center block
+         * @return      True if every block is on the board and empty, false otherwise
+         */
+        private boolean fits(int d, int row, int col)
+        {
+            if (offsets[d] == null)
+                return false;
+            for (int[] o : offsets[d])
+            {
+                if (!board.isEmpty(row + o[0], col + o[1]))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Moves the tetrad if it fits.
+         * @param state The position
+         * @param dr    The change in row
+         * @param dc    The change in column
+         * @return      The new position, or the same position if it does not fit
+         */
+        private int move(int state, int dr, int dc)
+        {
+            int col = state % cols;
+            int row = state / cols % rows;
+            int d = state / cols / rows;
+            if (fits(d, row + dr, col + dc))
+                return (d * rows + row + dr) * cols + col + dc;
+            return state;
+        }
+
+        /**
+         * Rotates the tetrad clockwise as Tetrad.rotate does, trying each wall kick in turn.
+         * @param state The position
+         * @return      The new position, or the same position if no rotation fits
+         */
+        private int rotate(int state)
+        {
+            int col = state % cols;
+            int row = state / cols % rows;
+            int d = (state / cols / rows + 1) % 4;
+            if (fits(d, row, col))
+                return (d * rows + row) * cols + col;
+            for (int i = 0; i < Tetrad.getKickCount(); i++)
+            {
+                int r = row + Tetrad.getKickRow(i);
+                int c = col + Tetrad.getKickCol(i);
+                if (fits(d, r, c))
+                    return (d * rows + r) * cols + c;
+            }
+            return state;
+        }
+
+        /**
+         * Drops the tetrad from a position and keeps where its blocks land.
+         * @param state The position
+         */
+        private void drop(int state)
+        {
+            int col = state % cols;
+            int row = state / cols % rows;
+            int d = state / cols / rows;
+            for (int[] o : offsets[d])
+                deepest = Math.max(deepest, row + o[0]);
+            while (fits(d, row + 1, col))
+                row++;
+            for (int i = 0; i < 4; i++)
+                landing[i] = (row + offsets[d][i][0]) * cols + col + offsets[d][i][1];
+            sort(landing);
+        }
+    }
+
+    /**
+     * A Table holds the fewest inputs to every placement of a shape on an empty board, keyed by
+     * pattern, along with the lowest row any of those inputs take the tetrad to.
+     */
+    private static class Table
+    {
+        private HashMap<Long, Integer> minimum;
+        private int reach;
+
+        /**
+         * Works out the table by searching an empty board without moving down, since moving
+         * down never helps there.
+         * @param shape The shape (0 - 6)
+         * @param rows  The number of rows of the board
+         * @param cols  The number of columns of the board
+         * @param spawn The spawn location
+         */
+        public Table(int shape, int rows, int cols, Location spawn)
+        {
+            minimum = new HashMap<Long, Integer>();
+            Search search = new Search(new Board(rows, cols), shape, false)
+            {
+                protected void visit(int state)
+                {
+                    Location[] locs = new Location[4];
+                    for (int i = 0; i < 4; i++)
+                        locs[i] = new Location(getLanding()[i] / cols, getLanding()[i] % cols);
+                    minimum.putIfAbsent(patternKey(locs), getDistance(state));
+                }
+            };
+            search.run(spawn, null);
+            reach = search.getDeepest();
+        }
+
+        /**
+         * Determines whether the table holds for a placement on the given board: every row the
+         * empty-board inputs pass through is empty, and nothing is above the placed blocks, so
+         * dropping the pattern from the top lands exactly on the placement.
+         * @param board     The board, without the tetrad in it
+         * @param placement The locations of the blocks of the placed tetrad
+         * @return          True if the table holds, false otherwise
+         */
+        public boolean covers(Board board, Location[] placement)
+        {
+            for (int r = 0; r <= reach && r < board.getNumRows(); r++)
+            {
+                if (board.getRowCount(r) > 0)
+                    return false;
+            }
+            for (Location l : placement)
+            {
+                for (int r = l.getRow() - 1; r >= 0; r--)
+                {
+                    if (!board.isEmpty(r, l.getCol()))
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * GameEvents holds the Java Flight Recorder events that the game emits at its natural
+ * boundaries: every tick of the game loop, every tetrad spawned, locked and hard dropped, every
+ * line clear, every paint of the board and every sound effect started. Recorded alongside the
+ * JVM's own events, they show which frame a GC pause or safepoint fell in and whether it made a
+ * visible hitch, all in one recording, for example:
+ *
+ * java -XX:StartFlightRecording=filename=tetris.jfr,settings=profile Tetris
+ *
+ * The events are in the Tetris category and none of them record a stack trace. When they are
+ * not enabled in the recording (or nothing is recording), begin and commit do nothing and the
+ * instant events are not even filled in, so leaving them in the game loop costs close to
+ * nothing. The tick event, which would otherwise be made every frame, is not even made: its
+ * type is looked up once and checked first.
+ *
+ * @author Pranav Sukesh
+ * @version 4/10/2023
+ */
+public class GameEvents
+{
+    private static final EventType TICK = EventType.getEventType(TickEvent.class);
+
+    /**
+     * Begins an event for a step of the game loop, if tick events are being recorded.
+     * @return  The begun event, to be filled in and committed at the end of the step, or null if
+     *          tick events are not being recorded
+     */
+    public static TickEvent beginTick()
+    {
+        if (!TICK.isEnabled())
+            return null;
+        TickEvent event = new TickEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Emits an event for a tetrad that has just spawned at the top of the board.
+     * @param shape The shape of the tetrad (0 - 6)
+     * @param frame The frame of the game
+     */
+    public static void spawn(int shape, int frame)
+    {
+        SpawnEvent event = new SpawnEvent();
+        if (event.isEnabled())
+        {
+            event.shape = shape;
+            event.frame = frame;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emits an event for a tetrad that has just locked in place.
+     * @param shape     The shape of the tetrad (0 - 6)
+     * @param frame     The frame of the game
+     * @param hardDrop  True if it locked because it was hard dropped
+     */
+    public static void lock(int shape, int frame, boolean hardDrop)
+    {
+        LockEvent event = new LockEvent();
+        if (event.isEnabled())
+        {
+            event.shape = shape;
+            event.frame = frame;
+            event.hardDrop = hardDrop;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emits an event for rows that have just been cleared.
+     * @param rows  The number of rows cleared at once (1 - 4)
+     * @param combo The number of locks in a row that have cleared lines, counting this one
+     * @param frame The frame of the game
+     */
+    public static void lineClear(int rows, int combo, int frame)
+    {
+        LineClearEvent event = new LineClearEvent();
+        if (event.isEnabled())
+        {
+            event.rows = rows;
+            event.combo = combo;
+            event.frame = frame;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emits an event for a tetrad that has just been hard dropped.
+     * @param shape     The shape of the tetrad (0 - 6)
+     * @param distance  The number of rows it dropped
+     */
+    public static void hardDrop(int shape, int distance)
+    {
+        HardDropEvent event = new HardDropEvent();
+        if (event.isEnabled())
+        {
+            event.shape = shape;
+            event.distance = distance;
+            event.commit();
+        }
+    }
+
+    /**
+     * A TickEvent spans one step of the game loop.
+     */
+    @Name("tetris.Tick")
+    @Label("Tick")
+    @Category("Tetris")
+    @Description("One step of the game loop")
+    @StackTrace(false)
+    public static class TickEvent extends Event
+    {
+        @Label("Frame")
+        public int frame;
+
+        @Label("Level")
+        public int level;
+
+        @Label("Game Over")
+        public boolean gameOver;
+    }
+
+    /**
+     * A SpawnEvent marks a tetrad spawning at the top of the board.
+     */
+    @Name("tetris.Spawn")
+    @Label("Piece Spawn")
+    @Category("Tetris")
+    @Description("A tetrad spawned at the top of the board")
+    @StackTrace(false)
+    public static class SpawnEvent extends Event
+    {
+        @Label("Shape")
+        public int shape;
+
+        @Label("Frame")
+        public int frame;
+    }
+
+    /**
+     * A LockEvent marks a tetrad locking in place.
+     */
+    @Name("tetris.Lock")
+    @Label("Piece Lock")
+    @Category("Tetris")
+    @Description("A tetrad locked in place")
+    @StackTrace(false)
+    public static class LockEvent extends Event
+    {
+        @Label("Shape")
+        public int shape;
+
+        @Label("Frame")
+        public int frame;
+
+        @Label("Hard Drop")
+        public boolean hardDrop;
+    }
+
+    /**
+     * A LineClearEvent marks rows being cleared.
+     */
+    @Name("tetris.LineClear")
+    @Label("Line Clear")
+    @Category("Tetris")
+    @Description("Rows were cleared")
+    @StackTrace(false)
+    public static class LineClearEvent extends Event
+    {
+        @Label("Rows")
+        public int rows;
+
+        @Label("Combo")
+        public int combo;
+
+        @Label("Frame")
+        public int frame;
+    }
+
+    /**
+     * A HardDropEvent marks a tetrad being hard dropped.
+     */
+    @Name("tetris.HardDrop")
+    @Label("Hard Drop")
+    @Category("Tetris")
+    @Description("A tetrad was hard dropped")
+    @StackTrace(false)
+    public static class HardDropEvent extends Event
+    {
+        @Label("Shape")
+        public int shape;
+
+        @Label("Distance")
+        @Description("The number of rows dropped")
+        public int distance;
+    }
+
+    /**
+     * A PaintEvent spans one paint of the board.
+     */
+    @Name("tetris.Paint")
+    @Label("Paint")
+    @Category("Tetris")
+    @Description("One paint of the board")
+    @StackTrace(false)
+    public static class PaintEvent extends Event
+    {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+    }
+
+    /**
+     * A SoundEvent spans opening and starting an audio clip.
+     */
+    @Name("tetris.Sound")
+    @Label("Sound")
+    @Category("Tetris")
+    @Description("An audio clip was opened and started")
+    @StackTrace(false)
+    public static class SoundEvent extends Event
+    {
+        @Label("File")
+        public String file;
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * A GameState is a saved copy of everything a game of Tetris needs to carry on from a frame: the
+ * cells of its board, the falling tetrad, the upcoming and held shapes, the bag of shapes, the
+ * states of its random generators of shapes and garbage holes, and its counters. Effects and sounds
+ * are not part of it, since they do not change how the game plays out.
+ *
+ * A state is made once for a game and then saved into and restored from again and again (see
+ * Tetris.saveState and Tetris.restoreState), so saving a frame only copies a few small arrays.
+ *
+ * @author Pranav Sukesh
+ * @version 4/6/2023
+ */
+public class GameState
+{
+    private Board board;
+    private PieceQueue preview;
+    private int[] bag;
+    private int bagSize;
+    private long random, garbageRandom;
+    private int shape, direction;
+    private Location[] locs;
+    private int[] counters;
+    private boolean[] flags;
+    private int replaySize;
+    private int frame;
+
+    /**
+     * Constructs an empty state for a game with the given configuration.
+     * @param config    The geometry of the board of the game
+     */
+    public GameState(BoardConfig config)
+    {
+        board = new Board(config.getHeight(), config.getWidth());
+        preview = new PieceQueue(config.getPreviewCount());
+        bag = new int[7];
+        locs = new Location[4];
+        counters = new int[12];
+        flags = new boolean[4];
+        frame = -1;
+    }
+
+    /**
+     * Returns the copy of the board.
+     * @return  The board of this state
+     */
+    public Board getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Returns the copy of the upcoming shapes.
+     * @return  The upcoming shapes of this state
+     */
+    public PieceQueue getPreview()
+    {
+        return preview;
+    }
+
+    /**
+     * Returns the shapes left in the bag. Only the first getBagSize are used.
+     * @return  The bag of this state
+     */
+    public int[] getBag()
+    {
+        return bag;
+    }
+
+    /**
+     * Returns the number of shapes left in the bag.
+     * @return  The number of shapes in the bag
+     */
+    public int getBagSize()
+    {
+        return bagSize;
+    }
+
+    /**
+     * Sets the number of shapes left in the bag.
+     * @param bagSize   The number of shapes in the bag
+     */
+    public void setBagSize(int bagSize)
+    {
+        this.bagSize = bagSize;
+    }
+
+    /**
+     * Returns the state of the random generator.
+     * @return  The state of the random generator
+     */
+    public long getRandom()
+    {
+        return random;
+    }
+
+    /**
+     * Sets the state of the random generator.
+     * @param random    The state of the random generator
+     */
+    public void setRandom(long random)
+    {
+        this.random = random;
+    }
+
+    /**
+     * Returns the state of the random generator of garbage holes.
+     * @return  The state of the garbage generator
+     */
+    public long getGarbageRandom()
+    {
+        return garbageRandom;
+    }
+
+    /**
+     * Sets the state of the random generator of garbage holes.
+     * @param garbageRandom The state of the garbage generator
+     */
+    public void setGarbageRandom(long garbageRandom)
+    {
+        this.garbageRandom = garbageRandom;
+    }
+
+    /**
+     * Saves the falling tetrad.
+     * @param shape     The shape of the tetrad
+     * @param direction The direction of the tetrad
+     * @param locations The locations of the blocks of the tetrad
+     */
+    public void setTetrad(int shape, int direction, Location[] locations)
+    {
+        this.shape = shape;
+        this.direction = direction;
+        System.arraycopy(locations, 0, locs, 0, locs.length);
+    }
+
+    /**
+     * Returns the shape of the falling tetrad.
+     * @return  The shape of the tetrad
+     */
+    public int getShape()
+    {
+        return shape;
+    }
+
+    /**
+     * Returns the direction of the falling tetrad.
+     * @return  The direction of the tetrad
+     */
+    public int getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * Returns the locations of the blocks of the falling tetrad.
+     * @return  The locations of the blocks of the tetrad
+     */
+    public Location[] getLocations()
+    {
+        return locs;
+    }
+
+    /**
+     * Returns the counters of the game (score, level, lines and so on), in the order the game
+     * saves them.
+     * @return  The counters of this state
+     */
+    public int[] getCounters()
+    {
+        return counters;
+    }
+
+    /**
+     * Returns the flags of the game (whether it can hold, shift, and so on), in the order the
+     * game saves them.
+     * @return  The flags of this state
+     */
+    public boolean[] getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * Returns the number of inputs the replay of the game held.
+     * @return  The size of the replay
+     */
+    public int getReplaySize()
+    {
+        return replaySize;
+    }
+
+    /**
+     * Sets the number of inputs the replay of the game held.
+     * @param replaySize    The size of the replay
+     */
+    public void setReplaySize(int replaySize)
+    {
+        this.replaySize = replaySize;
+    }
+
+    /**
+     * Returns the frame the state was saved at.
+     * @return  The number of frames played when the state was saved, or -1 if it never was
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Sets the frame the state was saved at.
+     * @param frame The number of frames played
+     */
+    public void setFrame(int frame)
+    {
+        this.frame = frame;
+    }
+
+    /**
+     * Returns a checksum of the state, for telling whether two games are in the same state.
+     * @return  A hash of the board, shapes, falling tetrad, counters and flags
+     */
+    public long checksum()
+    {
+        long h = 1125899906842597L;
+        for (int r = 0; r < board.getNumRows(); r++)
+        {
+            for (int c = 0; c < board.getNumCols(); c++)
+                h = 31 * h + board.get(r, c);
+        }
+        for (int i = 0; i < preview.size(); i++)
+            h = 31 * h + preview.peek(i);
+        for (int i = 0; i < bagSize; i++)
+            h = 31 * h + bag[i];
+        for (int counter : counters)
+            h = 31 * h + counter;
+        for (boolean flag : flags)
+            h = 31 * h + (flag ? 1 : 0);
+        h = 31 * h + random;
+        h = 31 * h + garbageRandom;
+        h = 31 * h + shape;
+        h = 31 * h + direction;
+        for (Location loc : locs)
+            h = 31 * h + (loc == null ? -1 : loc.getRow() * 256 + loc.getCol());
+        return h;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * A Gauge is a named value that goes up and down while the game runs, such as the pieces placed
+ * per second. Unlike a Counter it holds only the last value set, which is published by whatever
+ * computes it and read by Metrics when the metrics are exported. Gauges are made and listed by
+ * Metrics.
+ *
+ * @author Pranav Sukesh
+ * @version 4/11/2023
+ */
+public class Gauge
+{
+    private String name;
+    private String help;
+    private volatile double value;
+
+    /**
+     * Constructs a gauge at zero.
+     * @param name  The name of the gauge, in the style of Prometheus (tetris_...)
+     * @param help  A short description of what is measured
+     */
+    public Gauge(String name, String help)
+    {
+        this.name = name;
+        this.help = help;
+    }
+
+    /**
+     * Sets the value.
+     * @param value The new value
+     */
+    public void set(double value)
+    {
+        this.value = value;
+    }
+
+    /**
+     * Returns the value.
+     * @return  The last value set
+     */
+    public double get()
+    {
+        return value;
+    }
+
+    /**
+     * Returns the name of the gauge.
+     * @return  The name of the gauge
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the description of the gauge.
+     * @return  The description of what is measured
+     */
+    public String getHelp()
+    {
+        return help;
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Random;
+
+/**
+ * The GeometryBenchmark runs headless games of Tetris on boards of increasing size, from the
+ * classic 10 x 20 up to 64 x 4096, and prints how long each game operation takes on average.
+ * Each game is driven by a simple random bot that shifts and rotates the falling tetrad and hard
+ * drops it every few frames. A lost game is replaced with a new one on the same board size.
+ *
+ * @author Pranav Sukesh
+ * @version 3/24/2023
+ */
+public class GeometryBenchmark
+{
+    private static final int[][] SIZES = {{10, 20}, {16, 64}, {32, 256}, {64, 1024}, {64, 4096}};
+    private static final int FRAMES = 50000;
+    private static final int DROP_EVERY = 12;
+
+    private static final String[] OPS = {"move", "rotate", "hard drop", "frame"};
+    private static final int MOVE = 0, ROTATE = 1, DROP = 2, FRAME = 3;
+
+    /**
+     * Runs the benchmark for every board size and prints the results.
+     */
+    public static void main(String[] args)
+    {
+        //warm up the JIT on the smallest board before timing anything
+        run(10, 20, FRAMES, false);
+
+        System.out.printf("%-10s %8s", "board", "games");
+        for (String op : OPS)
+            System.out.printf(" %12s", op + " ns");
+        System.out.println();
+
+        for (int[] size : SIZES)
+            run(size[0], size[1], FRAMES, true);
+    }
+
+    /**
+     * Plays the given number of frames on a board of the given size.
+     * @param width     The number of columns in the playfield
+     * @param height    The number of rows in the playfield
+     * @param frames    The number of frames to play
+     * @param print     True if the results should be printed
+     */
+    private static void run(int width, int height, int frames, boolean print)
+    {
+        BoardConfig config = new BoardConfig(width, height);
+        Random rand = new Random(31L * width + height);
+        long[] totals = new long[OPS.length];
+        long[] counts = new long[OPS.length];
+
+        Tetris game = new Tetris(config, true);
+        int games = 1;
+
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int action = rand.nextInt(4);
+            long start = System.nanoTime();
+            if (frame % DROP_EVERY == DROP_EVERY - 1)
+            {
+                game.hardDrop();
+                action = DROP;
+            }
+            else if (action == 0)
+            {
+                game.moveLeft();
+                action = MOVE;
+            }
+            else if (action == 1)
+            {
+                game.moveRight();
+                action = MOVE;
+            }
+            else if (action == 2)
+            {
+                game.rotateCW();
+                action = ROTATE;
+            }
+            else
+                action = -1;
+
+            long mid = System.nanoTime();
+            boolean over = game.step();
+            long end = System.nanoTime();
+
+            if (action >= 0)
+            {
+                totals[action] += mid - start;
+                counts[action]++;
+            }
+            totals[FRAME] += end - mid;
+            counts[FRAME]++;
+
+            if (over)
+            {
+                game = new Tetris(config, true);
+                games++;
+            }
+        }
+
+        if (print)
+        {
+            System.out.printf("%-10s %8d", width + "x" + height, games);
+            for (int i = 0; i < OPS.length; i++)
+                System.out.printf(" %12d", counts[i] == 0 ? 0 : totals[i] / counts[i]);
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The Gravity class holds the speed the falling tetrad drops at on every level, worked out once
+ * when the class is loaded. Speeds are stored in fixed point as a number of rows per frame with
+ * FRACTION_BITS bits after the point, so a tetrad can fall slower than a row a frame (the low
+ * levels fall a row every 30 frames) or many rows in one frame, up to 20 rows a frame (20G) on
+ * the highest levels, which drops a tetrad to the bottom of a classic board instantly.
+ *
+ * Each level also has a lock delay: the number of frames a tetrad can rest on the stack before
+ * it locks in place.
+ *
+ * The tables are worked out with StrictMath rather than Math, which may use a faster intrinsic
+ * whose last bit differs between JVMs and processors. Games played in lockstep on different
+ * computers (see RollbackSession) must agree on every speed exactly.
+ *
+ * @author Pranav Sukesh
+ * @version 4/4/2023
+ */
+public class Gravity
+{
+    public static final int FRACTION_BITS = 16;
+    public static final int ONE = 1 << FRACTION_BITS;
+    public static final int FRACTION_MASK = ONE - 1;
+    public static final int MAX_LEVEL = 20;
+
+    private static final int[] SPEEDS = new int[MAX_LEVEL + 1];
+    private static final int[] LOCK_DELAYS = new int[MAX_LEVEL + 1];
+    private static final int[] FAST_SPEEDS = {1, 2, 5, 10, 20};
+
+    static
+    {
+        for (int level = 1; level <= MAX_LEVEL; level++)
+        {
+            if (level < 16)
+            {
+                //the same curve the game always used, in frames per row, but kept fractional
+                double framesPerRow = 60 * StrictMath.exp(0.2 * (1 - level)) / 2;
+                SPEEDS[level] = (int) Math.round(ONE / framesPerRow);
+                LOCK_DELAYS[level] = Math.max(1, (int) framesPerRow);
+            }
+            else
+            {
+                SPEEDS[level] = FAST_SPEEDS[level - 16] * ONE;
+                LOCK_DELAYS[level] = 3;
+            }
+        }
+        SPEEDS[0] = SPEEDS[1];
+        LOCK_DELAYS[0] = LOCK_DELAYS[1];
+    }
+
+    /**
+     * Returns the speed the falling tetrad drops at on the given level.
+     * @param level The level (levels past MAX_LEVEL drop at the speed of MAX_LEVEL)
+     * @return      The number of rows dropped per frame, in fixed point
+     */
+    public static int rowsPerFrame(int level)
+    {
+        return SPEEDS[Math.max(0, Math.min(level, MAX_LEVEL))];
+    }
+
+    /**
+     * Returns the number of frames a tetrad can rest on the stack before it locks on the given
+     * level.
+     * @param level The level (levels past MAX_LEVEL use the delay of MAX_LEVEL)
+     * @return      The lock delay in frames
+     */
+    public static int lockDelay(int level)
+    {
+        return LOCK_DELAYS[Math.max(0, Math.min(level, MAX_LEVEL))];
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * A HighScore is the result of one finished game as kept by a HighScoreStore: when it ended, the
+ * seed of its shapes, its mode (the size of its board), and its score, lines, level, pieces and
+ * frames. A high score never changes once made.
+ *
+ * @author Pranav Sukesh
+ * @version 4/13/2023
+ */
+public class HighScore
+{
+    private long time;
+    private long seed;
+    private int mode;
+    private int score, lines, level, pieces, frames;
+
+    /**
+     * Constructs a high score.
+     * @param time      When the game ended, in milliseconds since 1970
+     * @param seed      The seed of the random shapes of the game
+     * @param mode      The mode of the game (see HighScoreStore.modeOf)
+     * @param score     The score
+     * @param lines     The number of lines cleared
+     * @param level     The level reached
+     * @param pieces    The number of tetrads locked
+     * @param frames    The number of frames played
+     */
+    public HighScore(long time, long seed, int mode, int score, int lines, int level, int pieces,
+                     int frames)
+    {
+        this.time = time;
+        this.seed = seed;
+        this.mode = mode;
+        this.score = score;
+        this.lines = lines;
+        this.level = level;
+        this.pieces = pieces;
+        this.frames = frames;
+    }
+
+    /**
+     * Returns when the game ended.
+     * @return  The time in milliseconds since 1970
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Returns the seed of the random shapes of the game.
+     * @return  The seed
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Returns the mode of the game.
+     * @return  The mode
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the score.
+     * @return  The score
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * Returns the number of lines cleared.
+     * @return  The number of lines
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Returns the level reached.
+     * @return  The level
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Returns the number of tetrads locked.
+     * @return  The number of pieces
+     */
+    public int getPieces()
+    {
+        return pieces;
+    }
+
+    /**
+     * Returns the number of frames played.
+     * @return  The number of frames
+     */
+    public int getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * Returns whether this score ranks above another: a higher score, or the same score reached
+     * earlier.
+     * @param other The other score
+     * @return      True if this score ranks above the other, false otherwise
+     */
+    public boolean ranksAbove(HighScore other)
+    {
+        return score != other.score ? score > other.score : time < other.time;
+    }
+
+    /**
+     * Returns a line describing this score.
+     * @return  The score, lines, level, pieces and seed
+     */
+    public String toString()
+    {
+        return String.format("%9d  %4d lines  lv %2d  %5d pieces  seed %d", score, lines, level,
+                pieces, seed);
+    }
+}
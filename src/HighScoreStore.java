@@ -0,0 +1,399 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * A HighScoreStore keeps the scores of finished games on disk, so they outlive the program. It
+ * is made of two files in a directory of its own:
+ *
+ * scores.log is an append-only log of fixed-size binary records, one per game, each ending in a
+ * CRC32 of the rest of the record. New scores are only ever appended, so a crash can at worst
+ * leave a torn record at the end, which the checksum catches.
+ *
+ * scores.idx is a sorted index of the log, best score first, with the mode, seed and record
+ * number of every score. It is memory-mapped, along with the log, so a query walks the index in
+ * order and reads just the records it returns, without reading the files or allocating for the
+ * scores it skips: the top scores, the top scores of a mode, or the scores of a seed come back in
+ * microseconds.
+ *
+ * When a store is opened, the log is compacted: every record is read and checked, damaged ones
+ * are dropped, the best KEEP_PER_MODE scores of each mode are kept, and the log and index are
+ * rewritten in order and swapped in atomically. Scores added while the store is open are kept in
+ * memory as well and merged into every query until the next compaction.
+ *
+ * Adding a score never blocks the game: it is queued for a background writer thread, which
+ * writes every score waiting in the queue at once and then forces them to disk with one fsync.
+ * Closing the store waits up to CLOSE_TIMEOUT_MILLIS for the writer to finish, since it may be
+ * called from a shutdown hook.
+ *
+ * Usage: java HighScoreStore [directory] [count]
+ * Prints the best scores in the given directory ("scores" if not given), the given number of them
+ * (10 if not given).
+ *
+ * @author Pranav Sukesh
+ * @version 4/13/2023
+ */
+public class HighScoreStore
+{
+    public static final int KEEP_PER_MODE = 1000;
+    public static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private static final String LOG = "scores.log";
+    private static final String INDEX = "scores.idx";
+    private static final int LOG_MAGIC = 0x54534C47;
+    private static final int INDEX_MAGIC = 0x54534958;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 44;
+    private static final int ENTRY_SIZE = 20;
+    private static final HighScore STOP = new HighScore(0, 0, 0, 0, 0, 0, 0, 0);
+
+    private File logFile, indexFile;
+    private FileChannel log;
+    private MappedByteBuffer index, records;
+    private int indexed;
+    private ArrayList<HighScore> recent;
+    private LinkedBlockingQueue<HighScore> pending;
+    private Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Prints the best scores in a store.
+     * @param args  The directory of the store and the number of scores to print
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File dir = new File(args.length > 0 ? args[0] : "scores");
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        HighScoreStore store = new HighScoreStore(dir);
+        List<HighScore> top = store.getTop(count);
+        for (int i = 0; i < top.size(); i++)
+            System.out.printf("%3d. %s%n", i + 1, top.get(i));
+        store.close();
+    }
+
+    /**
+     * Returns the mode of a game on a board of the given configuration, which is its size: the
+     * width times 1000 plus the height, so the classic 10 x 20 board is mode 10020.
+     * @param config    The geometry of the board
+     * @return          The mode
+     */
+    public static int modeOf(BoardConfig config)
+    {
+        return config.getWidth() * 1000 + config.getHeight();
+    }
+
+    /**
+     * Opens the store in the given directory, making it if needed, and compacts it.
+     * @param dir   The directory of the store
+     * @throws IOException  If the store cannot be read or written, or the log is not a log
+     */
+    public HighScoreStore(File dir) throws IOException
+    {
+        dir.mkdirs();
+        logFile = new File(dir, LOG);
+        indexFile = new File(dir, INDEX);
+        compact();
+
+        try (FileChannel ch = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ))
+        {
+            index = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        try (FileChannel ch = FileChannel.open(logFile.toPath(), StandardOpenOption.READ))
+        {
+            records = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        indexed = index.getInt(4);
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        recent = new ArrayList<HighScore>();
+        pending = new LinkedBlockingQueue<HighScore>();
+        writer = new Thread(this::write, "HighScoreWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads every intact record of the log, keeps the best of each mode, and rewrites the log
+     * and index in order.
+     * @throws IOException  If the files cannot be read or written, or the log is not a log
+     */
+    private void compact() throws IOException
+    {
+        ArrayList<HighScore> scores = new ArrayList<HighScore>();
+        if (logFile.exists())
+        {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(logFile.toPath()));
+            if (buf.limit() < HEADER_SIZE || buf.getInt(0) != LOG_MAGIC)
+                throw new IOException(logFile + " is not a score log");
+            for (int p = HEADER_SIZE; p + RECORD_SIZE <= buf.limit(); p += RECORD_SIZE)
+            {
+                HighScore s = read(buf, p, true);
+                if (s != null)
+                    scores.add(s);
+            }
+        }
+        scores.sort((a, b) -> a.ranksAbove(b) ? -1 : b.ranksAbove(a) ? 1 : 0);
+
+        HashMap<Integer, Integer> perMode = new HashMap<Integer, Integer>();
+        ArrayList<HighScore> kept = new ArrayList<HighScore>();
+        for (HighScore s : scores)
+        {
+            if (perMode.merge(s.getMode(), 1, Integer::sum) <= KEEP_PER_MODE)
+                kept.add(s);
+        }
+
+        ByteBuffer logBuf = ByteBuffer.allocate(HEADER_SIZE + kept.size() * RECORD_SIZE);
+        ByteBuffer indexBuf = ByteBuffer.allocate(HEADER_SIZE + kept.size() * ENTRY_SIZE);
+        logBuf.putInt(LOG_MAGIC).putInt(0);
+        indexBuf.putInt(INDEX_MAGIC).putInt(kept.size());
+        for (int i = 0; i < kept.size(); i++)
+        {
+            HighScore s = kept.get(i);
+            write(logBuf, s);
+            indexBuf.putInt(s.getScore()).putInt(s.getMode()).putLong(s.getSeed()).putInt(i);
+        }
+        replace(logFile, logBuf);
+        replace(indexFile, indexBuf);
+    }
+
+    /**
+     * Writes a file in full to a temporary file, forces it to disk, and moves it over the given
+     * file in one step, so the file is always either the old one or the new one.
+     * @param file  The file to replace
+     * @param buf   The new contents, from the start to the position
+     * @throws IOException  If the file cannot be written
+     */
+    private static void replace(File file, ByteBuffer buf) throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buf.hasRemaining())
+                ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a record.
+     * @param buf   The buffer holding the record
+     * @param p     The position of the record in the buffer
+     * @param check True if the checksum of the record should be checked
+     * @return      The score, or null if the checksum does not match
+     */
+    private static HighScore read(ByteBuffer buf, int p, boolean check)
+    {
+        if (check)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate().limit(p + RECORD_SIZE - 4).position(p));
+            if ((int) crc.getValue() != buf.getInt(p + RECORD_SIZE - 4))
+                return null;
+        }
+        return new HighScore(buf.getLong(p), buf.getLong(p + 8), buf.getInt(p + 16),
+                buf.getInt(p + 20), buf.getInt(p + 24), buf.getInt(p + 28), buf.getInt(p + 32),
+                buf.getInt(p + 36));
+    }
+
+    /**
+     * Writes a record at the position of the buffer.
+     * @param buf   The buffer to write to
+     * @param s     The score
+     */
+    private static void write(ByteBuffer buf, HighScore s)
+    {
+        int p = buf.position();
+        buf.putLong(s.getTime()).putLong(s.getSeed()).putInt(s.getMode()).putInt(s.getScore())
+                .putInt(s.getLines()).putInt(s.getLevel()).putInt(s.getPieces())
+                .putInt(s.getFrames());
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().limit(p + RECORD_SIZE - 4).position(p));
+        buf.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Adds a score. It is visible to queries right away and written to disk in the background;
+     * this never waits for the disk.
+     * @param s The score of a finished game
+     */
+    public void add(HighScore s)
+    {
+        if (closed)
+            return;
+        synchronized (recent)
+        {
+            int lo = 0;
+            int hi = recent.size();
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (s.ranksAbove(recent.get(mid)))
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            recent.add(lo, s);
+        }
+        pending.add(s);
+    }
+
+    /**
+     * Writes the queued scores to the end of the log until the store is closed. Every score
+     * waiting when the writer wakes up is written at once and forced to disk together.
+     */
+    private void write()
+    {
+        ArrayList<HighScore> batch = new ArrayList<HighScore>();
+        try
+        {
+            boolean stopping = false;
+            while (!stopping)
+            {
+                batch.clear();
+                batch.add(pending.take());
+                pending.drainTo(batch);
+                stopping = batch.remove(STOP);
+
+                ByteBuffer buf = ByteBuffer.allocate(batch.size() * RECORD_SIZE);
+                for (HighScore s : batch)
+                    write(buf, s);
+                buf.flip();
+                while (buf.hasRemaining())
+                    log.write(buf);
+                if (!batch.isEmpty())
+                    log.force(false);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //stopped without writing the rest
+        }
+        catch (IOException e)
+        {
+            System.err.println("high scores: cannot write " + logFile + ": " + e);
+        }
+    }
+
+    /**
+     * Writes every score added so far to disk and closes the store. Scores added after this are
+     * ignored. This waits at most CLOSE_TIMEOUT_MILLIS for the writer, and leaves the log open
+     * for it if it has not finished by then.
+     */
+    public void close()
+    {
+        if (closed)
+            return;
+        closed = true;
+        pending.add(STOP);
+        try
+        {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+            if (!writer.isAlive())
+                log.close();
+        }
+        catch (InterruptedException | IOException e)
+        {
+            //the writer has forced everything it wrote
+        }
+    }
+
+    /**
+     * Returns the best scores of every mode.
+     * @param n The number of scores to return
+     * @return  Up to n scores, best first
+     */
+    public List<HighScore> getTop(int n)
+    {
+        return query(n, false, 0, false, 0);
+    }
+
+    /**
+     * Returns the best scores of a mode.
+     * @param n     The number of scores to return
+     * @param mode  The mode (see modeOf)
+     * @return      Up to n scores of the mode, best first
+     */
+    public List<HighScore> getTop(int n, int mode)
+    {
+        return query(n, true, mode, false, 0);
+    }
+
+    /**
+     * Returns the best scores of games played with a seed.
+     * @param n     The number of scores to return
+     * @param seed  The seed of the random shapes
+     * @return      Up to n scores of games with the seed, best first
+     */
+    public List<HighScore> getBySeed(int n, long seed)
+    {
+        return query(n, false, 0, true, seed);
+    }
+
+    /**
+     * Merges the scores of the index with the scores added since the store was opened, best
+     * first, keeping the ones that match.
+     * @param n         The number of scores to return
+     * @param byMode    True if only scores of the given mode match
+     * @param mode      The mode
+     * @param bySeed    True if only scores of the given seed match
+     * @param seed      The seed
+     * @return          Up to n matching scores, best first
+     */
+    private List<HighScore> query(int n, boolean byMode, int mode, boolean bySeed, long seed)
+    {
+        HighScore[] added;
+        synchronized (recent)
+        {
+            added = recent.toArray(new HighScore[0]);
+        }
+        ArrayList<HighScore> result = new ArrayList<HighScore>(Math.min(n, 64));
+        int i = 0;
+        int j = 0;
+        HighScore fromIndex = null;
+        while (result.size() < n)
+        {
+            while (fromIndex == null && i < indexed)
+            {
+                int p = HEADER_SIZE + i * ENTRY_SIZE;
+                i++;
+                if ((!byMode || index.getInt(p + 4) == mode)
+                        && (!bySeed || index.getLong(p + 8) == seed))
+                    fromIndex = read(records, HEADER_SIZE + index.getInt(p + 16) * RECORD_SIZE,
+                            false);
+            }
+            while (j < added.length && ((byMode && added[j].getMode() != mode)
+                    || (bySeed && added[j].getSeed() != seed)))
+                j++;
+            HighScore fromAdded = j < added.length ? added[j] : null;
+
+            if (fromIndex == null && fromAdded == null)
+                break;
+            if (fromAdded == null || (fromIndex != null && !fromAdded.ranksAbove(fromIndex)))
+            {
+                result.add(fromIndex);
+                fromIndex = null;
+            }
+            else
+            {
+                result.add(fromAdded);
+                j++;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Histogram records how long something takes, such as a frame of the game loop, in the style
+ * of an HDR histogram: values are counted in buckets whose width grows with their value. Every
+ * power of two is split into SUB_BUCKETS buckets, so any value is known to within an eighth of
+ * itself, from a nanosecond up to hours, in a fixed table of counts. Recording a value finds its
+ * bucket with a few bit operations and adds one to it, without locking or allocating.
+ *
+ * @author Pranav Sukesh
+ * @version 4/9/2023
+ */
+public class Histogram
+{
+    public static final int SUB_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private String name;
+    private String help;
+    private AtomicLongArray counts;
+    private LongAdder count;
+    private LongAdder sum;
+    private LongAccumulator max;
+
+    /**
+     * Constructs an empty histogram.
+     * @param name  The name of the histogram, in the style of Prometheus (tetris_..._seconds)
+     * @param help  A short description of what is measured
+     */
+    public Histogram(String name, String help)
+    {
+        this.name = name;
+        this.help = help;
+        counts = new AtomicLongArray(BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     * @param value The value (not negative)
+     * @return      The index of the bucket
+     */
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the smallest value past the given bucket.
+     * @param bucket    The index of the bucket
+     * @return          The upper bound of the bucket (exclusive)
+     */
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket + 1;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * Records a value.
+     * @param nanos The value in nanoseconds (negative values are counted as 0)
+     */
+    public void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one.
+     * @param other The histogram to add
+     */
+    public void add(Histogram other)
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            long n = other.counts.get(i);
+            if (n != 0)
+                counts.addAndGet(i, n);
+        }
+        count.add(other.getCount());
+        sum.add(other.getSum());
+        max.accumulate(other.getMax());
+    }
+
+    /**
+     * Returns the number of values recorded.
+     * @return  The number of values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     * @return  The sum in nanoseconds
+     */
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the largest value recorded.
+     * @return  The largest value in nanoseconds, or 0 if none were recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the value that the given fraction of the recorded values are under, to within the
+     * width of its bucket.
+     * @param fraction  The fraction of values (0.5 for the median, 0.99 for the 99th percentile)
+     * @return          The upper bound of the bucket holding that value, in nanoseconds
+     */
+    public long getPercentile(double fraction)
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+        if (total == 0)
+            return 0;
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, target))
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the number of values recorded below the given bound, counting only whole buckets.
+     * The bound should be a power of two, which always falls between buckets.
+     * @param bound The bound in nanoseconds
+     * @return      The number of values less than the bound
+     */
+    public long getCountBelow(long bound)
+    {
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && upperBound(i) <= bound; i++)
+            seen += counts.get(i);
+        return seen;
+    }
+
+    /**
+     * Returns the name of the histogram.
+     * @return  The name of the histogram
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the description of the histogram.
+     * @return  The description of what is measured
+     */
+    public String getHelp()
+    {
+        return help;
+    }
+}
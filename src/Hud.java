@@ -0,0 +1,147 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A Hud shows the score, level, lines cleared, pieces per second, combo, inputs per piece, T-spins
+ * and finesse faults of a game inside the side panel, below the hold slot. The rates come from the
+ * PlayerStats of the game and are shown to a tenth. The game hands it new values every frame, but
+ * the values are only stored there; the text is laid out and drawn into a cached image by the
+ * renderer, and only when a value (or the size of the area) has changed. Every other frame just
+ * copies the image.
+ *
+ * @author Pranav Sukesh
+ * @version 4/12/2023
+ */
+public class Hud
+{
+    private static final Color TEXT = Color.WHITE;
+    private static final int LINES = 5;
+
+    private int score, level, lines, ppsTenths, combo, kppTenths, tSpins, faults;
+    private boolean dirty;
+    private long version;
+
+    private BufferedImage image;
+    private Font font;
+
+    /**
+     * Constructs a HUD showing a new game.
+     */
+    public Hud()
+    {
+        level = 1;
+        dirty = true;
+    }
+
+    /**
+     * Updates the values shown. The HUD is only redrawn if one of them changed.
+     * @param score     The score
+     * @param level     The level
+     * @param lines     The number of lines cleared
+     * @param combo     The number of tetrads in a row that have cleared lines, minus one
+     * @param stats     The statistics of the game
+     */
+    public synchronized void update(int score, int level, int lines, int combo,
+                                    PlayerStats stats)
+    {
+        int pps = (int) (stats.getPiecesPerSecond() * 10);
+        int kpp = (int) (stats.getInputsPerPiece() * 10);
+        int spins = stats.getTSpins();
+        int faults = stats.getFinesseFaults();
+        if (score != this.score || level != this.level || lines != this.lines
+                || pps != ppsTenths || combo != this.combo || kpp != kppTenths
+                || spins != tSpins || faults != this.faults)
+        {
+            this.score = score;
+            this.level = level;
+            this.lines = lines;
+            ppsTenths = pps;
+            this.combo = combo;
+            kppTenths = kpp;
+            tSpins = spins;
+            this.faults = faults;
+            dirty = true;
+            version++;
+        }
+    }
+
+    /**
+     * Returns the version of the values shown, which changes every time one of them changes.
+     * @return  The version of the values
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Draws the HUD into the given area, redrawing its image first if the values or the size of
+     * the area have changed.
+     * @param g         The graphics to paint with
+     * @param x         The x coordinate of the area
+     * @param y         The y coordinate of the area
+     * @param width     The width of the area
+     * @param height    The height of the area
+     */
+    public void paint(Graphics g, int x, int y, int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+            return;
+
+        if (image == null || image.getWidth() != width || image.getHeight() != height)
+        {
+            GraphicsConfiguration gc = g instanceof Graphics2D
+                    ? ((Graphics2D) g).getDeviceConfiguration() : null;
+            image = gc != null ? gc.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            font = new Font(Font.MONOSPACED, Font.BOLD,
+                    Math.max(6, Math.min(height / LINES * 4 / 5, width / 11)));
+            synchronized (this)
+            {
+                dirty = true;
+            }
+        }
+
+        String[] text = null;
+        synchronized (this)
+        {
+            if (dirty)
+            {
+                text = new String[] {
+                        "SCORE " + score,
+                        "LV " + level + "  LINES " + lines,
+                        "PPS " + ppsTenths / 10 + "." + ppsTenths % 10 + "  COMBO " + combo,
+                        "KPP " + kppTenths / 10 + "." + kppTenths % 10 + "  TSPIN " + tSpins,
+                        "FAULTS " + faults
+                };
+                dirty = false;
+            }
+        }
+
+        if (text != null)
+            render(text);
+
+        g.drawImage(image, x, y, null);
+    }
+
+    /**
+     * Draws the lines of text into the cached image.
+     * @param text  The lines of text
+     */
+    private void render(String[] text)
+    {
+        Graphics2D g = image.createGraphics();
+        g.setColor(BoardRenderer.BORDER);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font);
+        g.setColor(TEXT);
+        FontMetrics fm = g.getFontMetrics();
+        int lineHeight = image.getHeight() / LINES;
+        for (int i = 0; i < text.length; i++)
+            g.drawString(text[i], fm.charWidth(' ') / 2,
+                    i * lineHeight + (lineHeight + fm.getAscent() - fm.getDescent()) / 2);
+        g.dispose();
+    }
+}
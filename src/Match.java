@@ -0,0 +1,268 @@
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A Match is a game of Tetris between two or more players in one program. Every player has a
+ * game of their own, run headless, and all of the games are stepped one after another by the
+ * same loop at a fixed 60 frames a second. The boards are shown side by side in one
+ * SpectatorDisplay.
+ *
+ * The keys pressed in the window are split between the players: the first player uses A, D and
+ * S to move, W and Q to rotate, space to drop and shift to hold; the second player uses the
+ * arrow keys, up and period to rotate, enter to drop and slash to hold. Key presses are put in a
+ * queue for their player and made at the start of the next frame, on the thread of the loop, so
+ * the games are only ever changed by one thread.
+ *
+ * When a player clears lines, the garbage lines the clear sends go to the next player still in
+ * the match. A player whose board fills up is out, and the match ends when at most one player is
+ * left. Ending the match does not end the program.
+ *
+ * @author Pranav Sukesh
+ * @version 4/5/2023
+ */
+public class Match implements KeyListener
+{
+    private static final int FPS = 60;
+    private static final long FRAME_NANOS = 1000000000L / FPS;
+    private static final int MAX_LATE_FRAMES = 5;
+    private static final int QUEUE_SIZE = 64;
+
+    private static final int[][] KEYS = {
+        {KeyEvent.VK_A, KeyEvent.VK_D, KeyEvent.VK_S, KeyEvent.VK_W, KeyEvent.VK_Q,
+            KeyEvent.VK_SPACE, KeyEvent.VK_SHIFT},
+        {KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_UP,
+            KeyEvent.VK_PERIOD, KeyEvent.VK_ENTER, KeyEvent.VK_SLASH}
+    };
+    private static final int[] ACTIONS = {Replay.LEFT, Replay.RIGHT, Replay.DOWN,
+        Replay.ROTATE_CW, Replay.ROTATE_CCW, Replay.HARD_DROP, Replay.HOLD};
+
+    private Tetris[] players;
+    private boolean[] out;
+    private int alive;
+    private ArrayList<ArrayBlockingQueue<Integer>> inputs;
+    private BoardCompositor compositor;
+    private SpectatorDisplay display;
+
+    /**
+     * Plays a match and prints the winner. The number of players can be given as the first
+     * argument (2 if not given); only the first two players have keys.
+     * @param args  The number of players
+     */
+    public static void main(String[] args)
+    {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        Match match = new Match(n, new Random().nextLong());
+        match.show();
+        int winner = match.play();
+        System.out.println(winner < 0 ? "draw" : "player " + (winner + 1) + " wins");
+    }
+
+    /**
+     * Constructs a match between the given number of players. Every player gets the same
+     * shapes in the same order.
+     * @param n     The number of players
+     * @param seed  The seed of the random shapes
+     */
+    public Match(int n, long seed)
+    {
+        if (n < 2)
+            throw new IllegalArgumentException("a match needs at least 2 players");
+        players = new Tetris[n];
+        out = new boolean[n];
+        inputs = new ArrayList<ArrayBlockingQueue<Integer>>(n);
+        alive = n;
+        compositor = new BoardCompositor();
+        for (int i = 0; i < n; i++)
+        {
+            players[i] = new Tetris(new BoardConfig(), true, seed);
+            inputs.add(new ArrayBlockingQueue<Integer>(QUEUE_SIZE));
+            compositor.add(players[i]);
+        }
+    }
+
+    /**
+     * Opens a window showing every board of the match and taking the keys of the players.
+     * Effects are turned on, since they can now be seen.
+     */
+    public void show()
+    {
+        for (Tetris player : players)
+        {
+            if (!player.getAnim())
+                player.haltAnims();
+        }
+        display = new SpectatorDisplay(compositor, "Tetris - " + players.length + " players",
+                this);
+    }
+
+    /**
+     * Returns the game of the given player.
+     * @param i     The index of the player
+     * @return      The game of the player
+     */
+    public Tetris getPlayer(int i)
+    {
+        return players[i];
+    }
+
+    /**
+     * Returns the number of players in the match.
+     * @return  The number of players
+     */
+    public int getPlayerCount()
+    {
+        return players.length;
+    }
+
+    /**
+     * Returns true if the given player is out of the match.
+     * @param i     The index of the player
+     * @return      True if the board of the player has filled up
+     */
+    public boolean isOut(int i)
+    {
+        return out[i];
+    }
+
+    /**
+     * Queues an input for a player, to be made at the start of the next frame. The input is
+     * dropped if the player already has a full queue.
+     * @param i         The index of the player
+     * @param action    The input, as one of the actions of Replay
+     */
+    public void input(int i, int action)
+    {
+        inputs.get(i).offer(action);
+    }
+
+    /**
+     * Runs the match at 60 frames a second until it is over. Frames are timed against a fixed
+     * deadline rather than a sleep after each frame, so the rate does not drift as players are
+     * added; if the loop falls more than a few frames behind, it drops them instead of rushing.
+     * @return  The index of the winner, or -1 if the last players went out on the same frame
+     */
+    public int play()
+    {
+        long deadline = System.nanoTime();
+        while (!tick())
+        {
+            deadline += FRAME_NANOS;
+            long wait = deadline - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            else if (wait < -MAX_LATE_FRAMES * FRAME_NANOS)
+                deadline = System.nanoTime();
+        }
+        int winner = getWinner();
+        if (display != null)
+            display.setTitle("Tetris - " + (winner < 0 ? "draw" : "player " + (winner + 1)
+                    + " wins"));
+        return winner;
+    }
+
+    /**
+     * Runs a single frame of the match. Every player still in makes their queued inputs and
+     * steps their game once, and then the garbage each player sent is passed on to the next
+     * player still in.
+     * @return  True if the match is over, false otherwise
+     */
+    public boolean tick()
+    {
+        for (int i = 0; i < players.length; i++)
+        {
+            if (out[i])
+                continue;
+            Integer action;
+            while ((action = inputs.get(i).poll()) != null)
+                Replay.apply(players[i], action);
+            if (players[i].step())
+            {
+                out[i] = true;
+                alive--;
+            }
+        }
+
+        for (int i = 0; i < players.length; i++)
+        {
+            int garbage = players[i].takeOutgoingGarbage();
+            int target = nextAlive(i);
+            if (garbage > 0 && !out[i] && target >= 0)
+                players[target].receiveGarbage(garbage);
+        }
+        return alive <= 1;
+    }
+
+    /**
+     * Returns the first player after the given one that is still in the match.
+     * @param i     The index of the player
+     * @return      The index of the next player still in, or -1 if there is none
+     */
+    private int nextAlive(int i)
+    {
+        for (int j = 1; j < players.length; j++)
+        {
+            int next = (i + j) % players.length;
+            if (!out[next])
+                return next;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the player still in the match, once it is over.
+     * @return  The index of the winner, or -1 if no player is left
+     */
+    public int getWinner()
+    {
+        for (int i = 0; i < players.length; i++)
+        {
+            if (!out[i])
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the input the given key makes for the given player.
+     * @param player    The index of the player (only the first two players have keys)
+     * @param keyCode   The code of the key pressed
+     * @return          The input, as one of the actions of Replay, or -1 if the key is not one
+     *                  of the keys of the player
+     */
+    public static int actionFor(int player, int keyCode)
+    {
+        if (player >= KEYS.length)
+            return -1;
+        for (int k = 0; k < KEYS[player].length; k++)
+        {
+            if (KEYS[player][k] == keyCode)
+                return ACTIONS[k];
+        }
+        return -1;
+    }
+
+    public void keyPressed(KeyEvent e)
+    {
+        for (int i = 0; i < players.length; i++)
+        {
+            int action = actionFor(i, e.getKeyCode());
+            if (action >= 0)
+            {
+                input(i, action);
+                return;
+            }
+        }
+    }
+
+    public void keyReleased(KeyEvent e)
+    {
+    }
+
+    public void keyTyped(KeyEvent e)
+    {
+    }
+}
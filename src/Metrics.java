@@ -0,0 +1,345 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import javax.management.*;
+
+/**
+ * Metrics holds the counters, histograms and gauges that describe a running game: frames,
+ * pieces, lines, tetrises, T-spins, finesse faults, hard drops, tetrad moves and rotations,
+ * paints, audio clips opened and threads started, how long frames, paints and inputs take, and
+ * the rates of play that PlayerStats publishes. The game records into them as it runs; each
+ * record is a LongAdder increment or a histogram bucket increment, a few nanoseconds with no
+ * locks, so they can stay on in the 60 fps loop.
+ *
+ * They can be read in two ways: as attributes of a JMX MBean named tetris:type=Metrics (in
+ * jconsole, for example), and in the Prometheus text format from a small HTTP server on the
+ * loopback interface at /metrics. Histograms are exported to Prometheus with a bucket at every
+ * power of two of nanoseconds, and to JMX as a count, median, 99th percentile and maximum.
+ *
+ * @author Pranav Sukesh
+ * @version 4/14/2023
+ */
+public class Metrics
+{
+    public static final int DEFAULT_PORT = 9464;
+
+    private static final ArrayList<Counter> COUNTERS = new ArrayList<Counter>();
+    private static final ArrayList<Histogram> HISTOGRAMS = new ArrayList<Histogram>();
+    private static final ArrayList<Gauge> GAUGES = new ArrayList<Gauge>();
+    private static final int MIN_EXPONENT = 10;
+    private static final int MAX_EXPONENT = 34;
+
+    public static final Counter FRAMES = counter("tetris_frames_total",
+            "Frames stepped by the game loop");
+    public static final Counter PIECES = counter("tetris_pieces_total",
+            "Tetrads locked in place");
+    public static final Counter LINES = counter("tetris_lines_total", "Lines cleared");
+    public static final Counter TETRISES = counter("tetris_tetrises_total",
+            "Four lines cleared at once");
+    public static final Counter HARD_DROPS = counter("tetris_hard_drops_total", "Hard drops");
+    public static final Counter MOVES = counter("tetris_tetrad_moves_total",
+            "Successful tetrad translations");
+    public static final Counter ROTATIONS = counter("tetris_tetrad_rotations_total",
+            "Successful tetrad rotations");
+    public static final Counter PAINTS = counter("tetris_paints_total",
+            "Paints of the game window");
+    public static final Counter AUDIO_CLIPS = counter("tetris_audio_clips_opened_total",
+            "Audio clips opened for music and sound effects");
+    public static final Counter THREADS = counter("tetris_threads_started_total",
+            "Threads started by the game");
+    public static final Counter TSPINS = counter("tetris_tspins_total",
+            "T tetrads locked after a rotation into a slot with three corners filled");
+    public static final Counter FINESSE_FAULTS = counter("tetris_finesse_faults_total",
+            "Tetrads placed with more inputs than needed");
+    public static final Counter EVENTS_DROPPED = counter("tetris_events_dropped_total",
+            "Game events not logged because the event log was behind");
+
+    public static final Histogram FRAME_TIME = histogram("tetris_frame_seconds",
+            "Time taken to step one frame");
+    public static final Histogram PAINT_TIME = histogram("tetris_paint_seconds",
+            "Time taken to paint the game window");
+    public static final Histogram INPUT_LATENCY = histogram("tetris_input_latency_seconds",
+            "Time from an input to the end of the frame that includes it");
+
+    public static final Gauge PIECES_PER_SECOND = gauge("tetris_pieces_per_second",
+            "Tetrads locked per second of play over the last minute");
+    public static final Gauge INPUTS_PER_PIECE = gauge("tetris_inputs_per_piece",
+            "Inputs per tetrad locked over the last minute");
+    public static final Gauge LINES_PER_MINUTE = gauge("tetris_lines_per_minute",
+            "Lines cleared per minute of play over the last minute");
+    public static final Gauge TETRIS_RATE = gauge("tetris_tetris_rate",
+            "Fraction of the lines of the last minute that were cleared four at once");
+    public static final Gauge SCORE_PER_MINUTE = gauge("tetris_score_per_minute",
+            "Points scored per minute of play over the last minute");
+
+    private static boolean registered;
+    private static HttpServer server;
+
+    /**
+     * Makes and lists a counter.
+     * @param name  The name of the counter
+     * @param help  The description of the counter
+     * @return      The new counter
+     */
+    private static Counter counter(String name, String help)
+    {
+        Counter c = new Counter(name, help);
+        COUNTERS.add(c);
+        return c;
+    }
+
+    /**
+     * Makes and lists a histogram.
+     * @param name  The name of the histogram
+     * @param help  The description of the histogram
+     * @return      The new histogram
+     */
+    private static Histogram histogram(String name, String help)
+    {
+        Histogram h = new Histogram(name, help);
+        HISTOGRAMS.add(h);
+        return h;
+    }
+
+    /**
+     * Makes and lists a gauge.
+     * @param name  The name of the gauge
+     * @param help  The description of the gauge
+     * @return      The new gauge
+     */
+    private static Gauge gauge(String name, String help)
+    {
+        Gauge g = new Gauge(name, help);
+        GAUGES.add(g);
+        return g;
+    }
+
+    /**
+     * Registers the MBean and starts the HTTP server on the given port of the loopback
+     * interface. Either can fail (if the port is taken, for example) without stopping the game;
+     * the failure is printed instead.
+     * @param port  The port to serve /metrics on, or -1 to only register the MBean
+     */
+    public static synchronized void export(int port)
+    {
+        try
+        {
+            registerMBean();
+        }
+        catch (JMException e)
+        {
+            System.err.println("metrics: cannot register MBean: " + e);
+        }
+        if (port < 0)
+            return;
+        try
+        {
+            serve(port);
+        }
+        catch (IOException e)
+        {
+            System.err.println("metrics: cannot serve on port " + port + ": " + e);
+        }
+    }
+
+    /**
+     * Registers the MBean tetris:type=Metrics with the platform MBean server, once.
+     * @throws JMException  If the MBean cannot be registered
+     */
+    public static synchronized void registerMBean() throws JMException
+    {
+        if (registered)
+            return;
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),
+                new ObjectName("tetris:type=Metrics"));
+        registered = true;
+    }
+
+    /**
+     * Starts the HTTP server that serves /metrics on the given port of the loopback interface,
+     * once. It runs on daemon threads, so it never keeps the game from exiting.
+     * @param port  The port to listen on (0 for any free port)
+     * @return      The port the server listens on
+     * @throws IOException  If the port cannot be opened
+     */
+    public static synchronized int serve(int port) throws IOException
+    {
+        if (server == null)
+        {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    port), 0);
+            server.createContext("/metrics", new HttpHandler()
+            {
+                public void handle(HttpExchange exchange) throws IOException
+                {
+                    byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type",
+                            "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody())
+                    {
+                        out.write(body);
+                    }
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Metrics");
+                t.setDaemon(true);
+                return t;
+            }));
+            //the server's own dispatcher thread is a daemon only if the thread starting it is
+            Thread starter = new Thread(server::start, "Metrics");
+            starter.setDaemon(true);
+            starter.start();
+            try
+            {
+                starter.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns every counter and histogram in the Prometheus text format.
+     * @return  The metrics as text
+     */
+    public static String toPrometheus()
+    {
+        StringBuilder out = new StringBuilder();
+        for (Counter c : COUNTERS)
+        {
+            out.append("# HELP ").append(c.getName()).append(' ').append(c.getHelp())
+                    .append('\n');
+            out.append("# TYPE ").append(c.getName()).append(" counter\n");
+            out.append(c.getName()).append(' ').append(c.get()).append('\n');
+        }
+        for (Gauge g : GAUGES)
+        {
+            out.append("# HELP ").append(g.getName()).append(' ').append(g.getHelp())
+                    .append('\n');
+            out.append("# TYPE ").append(g.getName()).append(" gauge\n");
+            out.append(g.getName()).append(' ').append(g.get()).append('\n');
+        }
+        for (Histogram h : HISTOGRAMS)
+        {
+            String name = h.getName();
+            out.append("# HELP ").append(name).append(' ').append(h.getHelp()).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; e++)
+            {
+                long bound = 1L << e;
+                out.append(name).append("_bucket{le=\"").append(bound / 1e9).append("\"} ")
+                        .append(h.getCountBelow(bound)).append('\n');
+            }
+            long count = h.getCount();
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            out.append(name).append("_sum ").append(h.getSum() / 1e9).append('\n');
+            out.append(name).append("_count ").append(count).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * A MetricsBean is the MBean of the metrics. It is a dynamic MBean, so every counter and gauge
+     * is an attribute under its own name without an interface listing them, and every histogram has
+     * attributes for its count, median, 99th percentile and maximum in nanoseconds.
+     */
+    private static class MetricsBean implements DynamicMBean
+    {
+        private static final String[] SUFFIXES = {"_count", "_p50_nanos", "_p99_nanos",
+            "_max_nanos"};
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException
+        {
+            for (Counter c : COUNTERS)
+            {
+                if (c.getName().equals(attribute))
+                    return c.get();
+            }
+            for (Gauge g : GAUGES)
+            {
+                if (g.getName().equals(attribute))
+                    return g.get();
+            }
+            for (Histogram h : HISTOGRAMS)
+            {
+                if (!attribute.startsWith(h.getName()))
+                    continue;
+                String suffix = attribute.substring(h.getName().length());
+                if (suffix.equals(SUFFIXES[0]))
+                    return h.getCount();
+                if (suffix.equals(SUFFIXES[1]))
+                    return h.getPercentile(0.5);
+                if (suffix.equals(SUFFIXES[2]))
+                    return h.getPercentile(0.99);
+                if (suffix.equals(SUFFIXES[3]))
+                    return h.getMax();
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        public AttributeList getAttributes(String[] attributes)
+        {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+            {
+                try
+                {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                }
+                catch (AttributeNotFoundException e)
+                {
+                    //left out of the list
+                }
+            }
+            return list;
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+        {
+            throw new AttributeNotFoundException(attribute.getName() + " is read only");
+        }
+
+        public AttributeList setAttributes(AttributeList attributes)
+        {
+            return new AttributeList();
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature)
+                throws ReflectionException
+        {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        public MBeanInfo getMBeanInfo()
+        {
+            ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            for (Counter c : COUNTERS)
+                attributes.add(new MBeanAttributeInfo(c.getName(), "long", c.getHelp(),
+                        true, false, false));
+            for (Gauge g : GAUGES)
+                attributes.add(new MBeanAttributeInfo(g.getName(), "double", g.getHelp(),
+                        true, false, false));
+            for (Histogram h : HISTOGRAMS)
+            {
+                for (String suffix : SUFFIXES)
+                    attributes.add(new MBeanAttributeInfo(h.getName() + suffix, "long",
+                            h.getHelp(), true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Tetris game metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -3,6 +3,9 @@ import java.util.ArrayList;
  * A MyBoundedGrid is a rectangular grid with a finite number of rows and columns.
  * Each location in a MyBoundedGrid is identified by a row and a column number, and you can store
  * an object at each location.  The rows and columns are numbered starting from 0.
+ * The grid keeps an index of its occupied cells, updated on every put and remove, so the
+ * occupied cells can be visited in time proportional to their number rather than the size of
+ * the grid.
  *
  * @param <E> the type of object that can be stored in this grid
  *
@@ -15,6 +18,10 @@ public class MyBoundedGrid<E>
     private int rows;
     private int cols;
 
+    private int[] occupied;
+    private int[] slots;
+    private int numOccupied;
+
     /**
      * Constructs an empty MyBoundedGrid with the given dimensions.
      * @param rows the number of rows in this MyBoundedGrid
@@ -25,6 +32,9 @@ public class MyBoundedGrid<E>
         this.rows = rows;
         this.cols = cols;
         grid = (E[][]) new Object[rows][cols];
+        occupied = new int[rows * cols];
+        slots = new int[rows * cols];
+        numOccupied = 0;
     }
 
 
@@ -78,6 +88,14 @@ public class MyBoundedGrid<E>
         {
             E old = (E) grid[loc.getRow()][loc.getCol()];
             grid[loc.getRow()][loc.getCol()] = obj;
+            if (old == null && obj != null)
+            {
+                addOccupied(loc.getRow() * cols + loc.getCol());
+            }
+            else if (old != null && obj == null)
+            {
+                removeOccupied(loc.getRow() * cols + loc.getCol());
+            }
             return old;
         }
         return null;
@@ -94,6 +112,10 @@ public class MyBoundedGrid<E>
         {
             E old = (E) grid[loc.getRow()][loc.getCol()];
             grid[loc.getRow()][loc.getCol()] = null;
+            if (old != null)
+            {
+                removeOccupied(loc.getRow() * cols + loc.getCol());
+            }
             return old;
         }
         return null;
@@ -119,18 +141,79 @@ public class MyBoundedGrid<E>
      */
     public ArrayList<Location> getOccupiedLocations()
     {
-        ArrayList<Location> locs = new ArrayList<Location>();
-        for (int r = 0; r < rows; r++)
+        ArrayList<Location> locs = new ArrayList<Location>(numOccupied);
+        for (int i = 0; i < numOccupied; i++)
         {
-            for (int c = 0; c < cols; c++)
-            {
-                if (grid[r][c] != null)
-                {
-                    locs.add(new Location(r, c));
-                }
-            }
+            locs.add(new Location(occupied[i] / cols, occupied[i] % cols));
         }
         return locs;
     }
 
+    /**
+     * Returns the number of occupied locations in this MyBoundedGrid.
+     * @return the number of occupied locations in this MyBoundedGrid
+     */
+    public int getNumOccupied()
+    {
+        return numOccupied;
+    }
+
+    /**
+     * Returns the row of the i-th occupied location. Together with getOccupiedCol this acts as
+     * a cursor over the occupied locations that does not allocate.
+     * @param i the index of the occupied location (0 &lt;= i &lt; getNumOccupied())
+     * @return the row of the i-th occupied location
+     */
+    public int getOccupiedRow(int i)
+    {
+        return occupied[i] / cols;
+    }
+
+    /**
+     * Returns the column of the i-th occupied location.
+     * @param i the index of the occupied location (0 &lt;= i &lt; getNumOccupied())
+     * @return the column of the i-th occupied location
+     */
+    public int getOccupiedCol(int i)
+    {
+        return occupied[i] % cols;
+    }
+
+    /**
+     * Calls the visitor once for every occupied location in this MyBoundedGrid. The order of
+     * the locations is unspecified, and the grid must not be changed during the visit.
+     * @param visitor the visitor to call with the row and column of each occupied location
+     */
+    public void forEachOccupied(CellVisitor visitor)
+    {
+        for (int i = 0; i < numOccupied; i++)
+        {
+            visitor.visit(occupied[i] / cols, occupied[i] % cols);
+        }
+    }
+
+    /**
+     * Adds a cell to the occupied index.
+     * @param cell the index of the cell (row * cols + col)
+     */
+    private void addOccupied(int cell)
+    {
+        slots[cell] = numOccupied;
+        occupied[numOccupied] = cell;
+        numOccupied++;
+    }
+
+    /**
+     * Removes a cell from the occupied index by moving the last occupied cell into its slot.
+     * @param cell the index of the cell (row * cols + col)
+     */
+    private void removeOccupied(int cell)
+    {
+        int slot = slots[cell];
+        numOccupied--;
+        int last = occupied[numOccupied];
+        occupied[slot] = last;
+        slots[last] = slot;
+    }
+
 }
@@ -0,0 +1,150 @@
+/**
+ * An Overlay holds the transient visual cells that are drawn on top of the board but are not
+ * part of it: the shadow of the falling tetrad, the Timeline of animation effects such as the
+ * trail left behind by a hard drop, and the ParticleSystem of line clears and drops. It also
+ * holds the QualityController that decides which of those effects are shown, and the Hud of
+ * game statistics drawn in the side panel. It is owned by the BlockDisplay, so the grid itself only
+ * ever contains real blocks.
+ *
+ * @author Pranav Sukesh
+ * @version 3/29/2023
+ */
+public class Overlay
+{
+    private int[] shadowRows;
+    private int[] shadowCols;
+    private int shadowCount;
+    private long version;
+
+    private Timeline timeline;
+    private ParticleSystem particles;
+    private QualityController quality;
+    private Hud hud;
+
+    /**
+     * Constructs an empty overlay with no shadow and no effects.
+     */
+    public Overlay()
+    {
+        shadowRows = new int[4];
+        shadowCols = new int[4];
+        shadowCount = 0;
+        timeline = new Timeline();
+        particles = new ParticleSystem();
+        quality = new QualityController();
+        hud = new Hud();
+    }
+
+    /**
+     * Sets the shadow to the given locations, replacing any previous shadow.
+     * @param locs  The locations of the shadow cells
+     */
+    public synchronized void setShadow(Location[] locs)
+    {
+        int count = Math.min(locs.length, shadowRows.length);
+        if (count != shadowCount)
+            version++;
+        shadowCount = count;
+        for (int i = 0; i < shadowCount; i++)
+        {
+            if (shadowRows[i] != locs[i].getRow() || shadowCols[i] != locs[i].getCol())
+                version++;
+            shadowRows[i] = locs[i].getRow();
+            shadowCols[i] = locs[i].getCol();
+        }
+    }
+
+    /**
+     * Removes the shadow from this overlay.
+     */
+    public synchronized void clearShadow()
+    {
+        if (shadowCount != 0)
+            version++;
+        shadowCount = 0;
+    }
+
+    /**
+     * Returns the version of the shadow, which changes every time the shadow moves.
+     * @return  The version of the shadow
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns true if any timeline effect or particle is playing, in which case the overlay
+     * looks different every frame.
+     * @return  True if the overlay is animating
+     */
+    public boolean isAnimating()
+    {
+        return timeline.getCount() > 0 || particles.getCount() > 0;
+    }
+
+    /**
+     * Returns the number of shadow cells in this overlay.
+     * @return  The number of shadow cells
+     */
+    public synchronized int getShadowCount()
+    {
+        return shadowCount;
+    }
+
+    /**
+     * Returns the row of the shadow cell at the given index.
+     * @param i     The index of the shadow cell
+     * @return      The row of the shadow cell
+     */
+    public synchronized int getShadowRow(int i)
+    {
+        return shadowRows[i];
+    }
+
+    /**
+     * Returns the column of the shadow cell at the given index.
+     * @param i     The index of the shadow cell
+     * @return      The column of the shadow cell
+     */
+    public synchronized int getShadowCol(int i)
+    {
+        return shadowCols[i];
+    }
+
+    /**
+     * Returns the timeline of animation effects drawn over the board.
+     * @return  The timeline of this overlay
+     */
+    public Timeline getTimeline()
+    {
+        return timeline;
+    }
+
+    /**
+     * Returns the particles drawn over the board.
+     * @return  The particle system of this overlay
+     */
+    public ParticleSystem getParticles()
+    {
+        return particles;
+    }
+
+    /**
+     * Returns the controller that decides which effects are shown.
+     * @return  The quality controller of this overlay
+     */
+    public QualityController getQuality()
+    {
+        return quality;
+    }
+
+    /**
+     * Returns the HUD of game statistics drawn in the side panel.
+     * @return  The HUD of this overlay
+     */
+    public Hud getHud()
+    {
+        return hud;
+    }
+}
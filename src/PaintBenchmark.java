@@ -0,0 +1,86 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * The PaintBenchmark paints half-filled boards of several sizes, with a shadow and a trail, into
+ * an offscreen image, and prints the average time of a paint when the cells are drawn with fills
+ * and when they are copied from the tile atlas. It runs without a window.
+ *
+ * @author Pranav Sukesh
+ * @version 3/27/2023
+ */
+public class PaintBenchmark
+{
+    private static final int[][] SIZES = {{10, 20}, {20, 40}, {40, 80}};
+    private static final int[] BLOCK_SIZES = {20, 40};
+    private static final int PAINTS = 2000;
+
+    /**
+     * Runs the benchmark for every board and block size and prints the results.
+     */
+    public static void main(String[] args)
+    {
+        //warm up both paths before timing anything
+        run(10, 20, 20, false, false);
+        run(10, 20, 20, true, false);
+
+        System.out.printf("%-8s %6s %12s %12s%n", "board", "block", "fills us", "tiles us");
+        for (int[] size : SIZES)
+            for (int blockSize : BLOCK_SIZES)
+            {
+                System.out.printf("%-8s %6d", size[0] + "x" + size[1], blockSize);
+                System.out.printf(" %12.1f", run(size[0], size[1], blockSize, false, true));
+                System.out.printf(" %12.1f%n", run(size[0], size[1], blockSize, true, true));
+            }
+    }
+
+    /**
+     * Paints a half-filled board of the given size repeatedly.
+     * @param width     The number of columns in the playfield
+     * @param height    The number of rows in the playfield
+     * @param blockSize The size of a cell in pixels
+     * @param useTiles  True to paint from the tile atlas, false to paint with fills
+     * @param timed     True if this run is measured
+     * @return          The average time of a paint in microseconds
+     */
+    private static double run(int width, int height, int blockSize, boolean useTiles,
+                              boolean timed)
+    {
+        BoardConfig config = new BoardConfig(width, height);
+        Board board = new Board(height, width);
+        Random rand = new Random(width * 31 + height);
+        for (int row = height / 2; row < height; row++)
+            for (int col = 0; col < width; col++)
+                if (rand.nextInt(4) != 0)
+                    board.set(row, col, Board.pieceCode(rand.nextInt(7)));
+
+        Overlay overlay = new Overlay();
+        overlay.setShadow(new Location[]{new Location(height / 2 - 1, 3),
+                new Location(height / 2 - 1, 4), new Location(height / 2 - 1, 5),
+                new Location(height / 2 - 2, 4)});
+        overlay.getTimeline().addTrail(3, 3, height / 2 - 2, 8);
+
+        PieceQueue preview = new PieceQueue(config.getPreviewCount());
+        for (int i = 0; i < config.getPreviewCount(); i++)
+            preview.add(i);
+
+        BoardRenderer renderer = new BoardRenderer(board, config, overlay, blockSize);
+        renderer.setPreview(preview);
+        renderer.setHeldShape(6);
+        renderer.setUseTiles(useTiles);
+
+        BufferedImage image = new BufferedImage(renderer.getWidth(), renderer.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+
+        int paints = timed ? PAINTS : PAINTS / 4;
+        long start = System.nanoTime();
+        for (int i = 0; i < paints; i++)
+            renderer.paint(g);
+        long end = System.nanoTime();
+        g.dispose();
+
+        return (end - start) / 1000.0 / paints;
+    }
+}
@@ -0,0 +1,49 @@
+import java.awt.*;
+
+/**
+ * The Palette maps the cell codes of a Board to the colors they are drawn with. It is shared by
+ * every board and is only used at render time.
+ *
+ * @author Pranav Sukesh
+ * @version 3/21/2023
+ */
+public class Palette
+{
+    private static final Color[] COLORS = {
+            null,
+            new Color(Color.CYAN.getRed(), Color.CYAN.getGreen(), Color.CYAN.getBlue(), 180),
+            new Color(Color.MAGENTA.getRed(), Color.MAGENTA.getGreen(), Color.MAGENTA.getBlue(),
+                    180),
+            new Color(Color.YELLOW.getRed(), Color.YELLOW.getGreen(), Color.YELLOW.getBlue(),
+                    180),
+            new Color(Color.RED.getRed(), Color.RED.getGreen(), Color.RED.getBlue(), 180),
+            new Color(Color.BLUE.getRed(), Color.BLUE.getGreen(), Color.BLUE.getBlue(), 180),
+            new Color(Color.GREEN.getRed(), Color.GREEN.getGreen(), Color.GREEN.getBlue(), 180),
+            new Color(Color.ORANGE.getRed(), Color.ORANGE.getGreen(), Color.ORANGE.getBlue(),
+                    180),
+            Color.WHITE,
+            Color.GRAY,
+            Color.WHITE
+    };
+
+    /**
+     * Returns the color a cell code is drawn with.
+     * @param code  The cell code
+     * @return      The color of the code, or null for an empty cell
+     */
+    public static Color colorOf(byte code)
+    {
+        if (code <= 0 || code >= COLORS.length)
+            return null;
+        return COLORS[code];
+    }
+
+    /**
+     * Returns the number of cell codes in the palette (including the empty code).
+     * @return  The number of cell codes
+     */
+    public static int size()
+    {
+        return COLORS.length;
+    }
+}
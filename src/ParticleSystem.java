@@ -0,0 +1,259 @@
+/**
+ * A ParticleSystem holds the small squares that burst out of cleared lines and hard dropped
+ * tetrads. Every particle is stored in a pool of primitive arrays (one array per field), so moving
+ * and drawing particles never allocates. The pool holds CAPACITY particles and is allocated in full
+ * the first time it is needed: the game allocates it when animations are turned on, so a game that
+ * never shows particles (such as a headless game) never pays for it, and one that does never
+ * allocates while it is played. Particles are moved once per frame by the game and fall under
+ * gravity until they run out of life or leave the board.
+ *
+ * The number of live particles is capped by a limit that follows how long frames take to draw:
+ * when a frame goes over the budget the limit is halved, and when frames are comfortably under
+ * it the limit slowly grows back up to the size of the pool. The limit can be turned off, for
+ * painting where frame times do not matter, such as exporting a replay. Random numbers come
+ * from a seeded generator, so the same frames always produce the same particles.
+ *
+ * @author Pranav Sukesh
+ * @version 3/30/2023
+ */
+public class ParticleSystem
+{
+    public static final int CAPACITY = 8192;
+    public static final long FRAME_BUDGET = 8000000L;
+
+    private static final int MIN_LIMIT = 64;
+    private static final int LINE_PARTICLES = 12;
+    private static final int DROP_PARTICLES = 6;
+    private static final int LIFE = 40;
+    private static final float GRAVITY = 0.012f;
+
+    private float[] xs;
+    private float[] ys;
+    private float[] vxs;
+    private float[] vys;
+    private int[] lives;
+    private byte[] codes;
+    private int count;
+    private int limit;
+    private int seed;
+    private boolean adaptive;
+
+    /**
+     * Constructs an empty particle system.
+     */
+    public ParticleSystem()
+    {
+        count = 0;
+        limit = CAPACITY;
+        seed = 0x2545F491;
+        adaptive = true;
+    }
+
+    /**
+     * Returns the next number from the random generator, between 0 (inclusive) and 1
+     * (exclusive).
+     * @return  A random number between 0 and 1
+     */
+    private float random()
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (seed >>> 8) / (float) (1 << 24);
+    }
+
+    /**
+     * Adds a particle, unless the limit has been reached.
+     * @param x     The column the particle starts at
+     * @param y     The row the particle starts at
+     * @param vx    The number of columns the particle moves per frame
+     * @param vy    The number of rows the particle moves per frame
+     * @param code  The cell code the particle is colored with
+     */
+    private void emit(float x, float y, float vx, float vy, byte code)
+    {
+        if (count >= limit)
+            return;
+        if (xs == null)
+            allocate();
+        int i = count++;
+        xs[i] = x;
+        ys[i] = y;
+        vxs[i] = vx;
+        vys[i] = vy;
+        lives[i] = LIFE / 2 + (int) (random() * LIFE / 2);
+        codes[i] = code;
+    }
+
+    /**
+     * Allocates the full pool of CAPACITY particles, if it has not been allocated yet.
+     */
+    public synchronized void allocate()
+    {
+        if (xs != null)
+            return;
+        xs = new float[CAPACITY];
+        ys = new float[CAPACITY];
+        vxs = new float[CAPACITY];
+        vys = new float[CAPACITY];
+        lives = new int[CAPACITY];
+        codes = new byte[CAPACITY];
+    }
+
+    /**
+     * Bursts particles out of every occupied cell of a row that is about to be cleared, each in
+     * the color of its cell.
+     * @param board The board the row is in
+     * @param row   The row being cleared
+     */
+    public synchronized void emitRow(Board board, int row)
+    {
+        for (int col = 0; col < board.getNumCols(); col++)
+        {
+            byte code = board.get(row, col);
+            if (code == Board.EMPTY)
+                continue;
+            for (int i = 0; i < LINE_PARTICLES; i++)
+                emit(col + random(), row + random(), (random() - 0.5f) * 0.3f,
+                        -random() * 0.25f, code);
+        }
+    }
+
+    /**
+     * Sprays particles sideways out of the bottom of a tetrad that was hard dropped.
+     * @param locs  The locations of the blocks of the tetrad
+     * @param code  The cell code of the tetrad
+     */
+    public synchronized void emitDrop(Location[] locs, byte code)
+    {
+        for (Location loc: locs)
+        {
+            for (int i = 0; i < DROP_PARTICLES; i++)
+                emit(loc.getCol() + random(), loc.getRow() + 1, (random() - 0.5f) * 0.4f,
+                        -random() * 0.1f, code);
+        }
+    }
+
+    /**
+     * Moves every particle forward one frame and removes the particles that have run out of
+     * life or fallen off the board.
+     * @param rows  The number of rows in the board
+     */
+    public synchronized void update(int rows)
+    {
+        int i = 0;
+        while (i < count)
+        {
+            vys[i] += GRAVITY;
+            xs[i] += vxs[i];
+            ys[i] += vys[i];
+            lives[i]--;
+            if (lives[i] <= 0 || ys[i] >= rows)
+                remove(i);
+            else
+                i++;
+        }
+    }
+
+    /**
+     * Removes the particle in the given slot by moving the last particle into it.
+     * @param i The slot to remove
+     */
+    private void remove(int i)
+    {
+        int last = --count;
+        xs[i] = xs[last];
+        ys[i] = ys[last];
+        vxs[i] = vxs[last];
+        vys[i] = vys[last];
+        lives[i] = lives[last];
+        codes[i] = codes[last];
+    }
+
+    /**
+     * Removes every particle.
+     */
+    public synchronized void clear()
+    {
+        count = 0;
+    }
+
+    /**
+     * Tells the system how long the last frame took to draw. A frame over FRAME_BUDGET halves
+     * the limit on live particles (dropping the particles over it), and a frame under half the
+     * budget lets the limit grow back.
+     * @param nanos The time the frame took in nanoseconds
+     */
+    public synchronized void reportFrameTime(long nanos)
+    {
+        if (!adaptive)
+            return;
+        if (nanos > FRAME_BUDGET)
+        {
+            limit = Math.max(MIN_LIMIT, limit / 2);
+            count = Math.min(count, limit);
+        }
+        else if (nanos < FRAME_BUDGET / 2 && limit < CAPACITY)
+            limit = Math.min(CAPACITY, limit + CAPACITY / 64);
+    }
+
+    /**
+     * Turns the limit that follows frame times on or off. While it is off, the limit is the
+     * size of the pool and the frame times reported are ignored.
+     * @param adaptive  True to follow frame times, false to keep the full pool
+     */
+    public synchronized void setAdaptive(boolean adaptive)
+    {
+        this.adaptive = adaptive;
+        if (!adaptive)
+            limit = CAPACITY;
+    }
+
+    /**
+     * Returns the number of live particles.
+     * @return  The number of live particles
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the current limit on live particles.
+     * @return  The limit on live particles
+     */
+    public synchronized int getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * Returns the column of the particle at the given index.
+     * @param i     The index of the particle
+     * @return      The column of the particle (with a fractional part)
+     */
+    public synchronized float getX(int i)
+    {
+        return xs[i];
+    }
+
+    /**
+     * Returns the row of the particle at the given index.
+     * @param i     The index of the particle
+     * @return      The row of the particle (with a fractional part)
+     */
+    public synchronized float getY(int i)
+    {
+        return ys[i];
+    }
+
+    /**
+     * Returns the cell code the particle at the given index is colored with.
+     * @param i     The index of the particle
+     * @return      The cell code of the particle
+     */
+    public synchronized byte getCode(int i)
+    {
+        return codes[i];
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * A PieceQueue is a fixed-capacity ring buffer of tetrad shapes (0 - 6). The game uses it for
+ * the upcoming tetrads shown in the side panel: only the shapes are stored, so advancing the
+ * queue never touches the board.
+ *
+ * @author Pranav Sukesh
+ * @version 3/25/2023
+ */
+public class PieceQueue
+{
+    private int[] shapes;
+    private int head;
+    private int size;
+
+    /**
+     * Constructs an empty PieceQueue that can hold the given number of shapes.
+     * @param capacity  The maximum number of shapes in the queue
+     */
+    public PieceQueue(int capacity)
+    {
+        shapes = new int[capacity];
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of shapes in the queue.
+     * @return  The number of shapes in the queue
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Adds a shape to the back of the queue.
+     * @precondition    The queue is not full
+     * @param shape     The shape to add
+     */
+    public void add(int shape)
+    {
+        if (size == shapes.length)
+            throw new IllegalStateException("piece queue is full");
+        int tail = head + size;
+        if (tail >= shapes.length)
+            tail -= shapes.length;
+        shapes[tail] = shape;
+        size++;
+    }
+
+    /**
+     * Removes and returns the shape at the front of the queue.
+     * @precondition    The queue is not empty
+     * @return          The shape at the front of the queue
+     */
+    public int remove()
+    {
+        if (size == 0)
+            throw new IllegalStateException("piece queue is empty");
+        int shape = shapes[head];
+        head++;
+        if (head == shapes.length)
+            head = 0;
+        size--;
+        return shape;
+    }
+
+    /**
+     * Overwrites this queue with the shapes of another queue of the same capacity.
+     * @param other The queue to copy from
+     */
+    public void copyFrom(PieceQueue other)
+    {
+        System.arraycopy(other.shapes, 0, shapes, 0, shapes.length);
+        head = other.head;
+        size = other.size;
+    }
+
+    /**
+     * Returns the i-th shape in the queue without removing it (0 is the front).
+     * @param i     The position in the queue
+     * @return      The shape at that position, or -1 if there is none
+     */
+    public int peek(int i)
+    {
+        if (i < 0 || i >= size)
+            return -1;
+        int index = head + i;
+        if (index >= shapes.length)
+            index -= shapes.length;
+        return shapes[index];
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * PlayerStats keeps live statistics of how a game is being played: pieces per second, inputs
+ * per piece, lines per minute, tetris rate and score per minute over the last minute of play,
+ * along with the T-spins and finesse faults of the whole game. The game feeds it as it runs:
+ * every input from the player, every tetrad locked and every frame.
+ *
+ * The statistics are kept incrementally in constant memory. Each kind of event is counted in a
+ * ring of WINDOW_SECONDS buckets of one second of play each, and a running sum of every ring is
+ * kept alongside it. When a frame starts a new second, the oldest bucket is subtracted from the
+ * sums and cleared for reuse, so recording an event and reading a rate are both a few array
+ * operations however fast the game is played. Time is measured in frames, so a headless game
+ * played by a bot at thousands of pieces a second of real time reports the same statistics as
+ * the same game played at 60 frames per second.
+ *
+ * A finesse fault is a tetrad placed with more inputs than needed. When the game has a
+ * FinesseAnalyzer, the analyzer finds the fewest inputs for every placement and reports faults
+ * as it goes. Otherwise a fault is counted, at most once per tetrad, when the inputs spent on a
+ * tetrad undo each other: moving both left and right, rotating both ways, or rotating three
+ * times the same way instead of once the other way. Holding starts the count over for the new
+ * tetrad.
+ *
+ * Once a second of play, a game with a display publishes the rates to the gauges of Metrics.
+ *
+ * @author Pranav Sukesh
+ * @version 4/12/2023
+ */
+public class PlayerStats
+{
+    public static final int WINDOW_SECONDS = 60;
+
+    private static final int PIECES = 0;
+    private static final int INPUTS = 1;
+    private static final int LINES = 2;
+    private static final int TETRISES = 3;
+    private static final int SCORE = 4;
+    private static final int KINDS = 5;
+
+    private int fps;
+    private boolean publish;
+    private long[][] buckets;
+    private long[] sums;
+    private int current;
+    private int seconds;
+    private int frames;
+    private int lastScore;
+    private int tSpins, faults;
+    private boolean analyzed;
+    private boolean movedLeft, movedRight;
+    private int turnsCW, turnsCCW;
+
+    /**
+     * Constructs the statistics of a new game.
+     * @param fps       The number of frames in a second of play
+     * @param publish   True if the rates should be published to Metrics
+     */
+    public PlayerStats(int fps, boolean publish)
+    {
+        this.fps = fps;
+        this.publish = publish;
+        buckets = new long[KINDS][WINDOW_SECONDS];
+        sums = new long[KINDS];
+    }
+
+    /**
+     * Adds an amount to the current bucket of a kind of event.
+     * @param kind      The kind of event
+     * @param amount    The amount to add
+     */
+    private void add(int kind, long amount)
+    {
+        buckets[kind][current] += amount;
+        sums[kind] += amount;
+    }
+
+    /**
+     * Records an input from the player.
+     * @param action    The input, one of the actions of Replay
+     */
+    public synchronized void onInput(int action)
+    {
+        add(INPUTS, 1);
+        if (action == Replay.LEFT)
+            movedLeft = true;
+        else if (action == Replay.RIGHT)
+            movedRight = true;
+        else if (action == Replay.ROTATE_CW)
+            turnsCW++;
+        else if (action == Replay.ROTATE_CCW)
+            turnsCCW++;
+        else if (action == Replay.HOLD)
+            newPiece();
+    }
+
+    /**
+     * Records a tetrad locking in place.
+     * @param rows  The number of rows it cleared
+     * @param tSpin True if it was a T-spin
+     */
+    public synchronized void onLock(int rows, boolean tSpin)
+    {
+        add(PIECES, 1);
+        add(LINES, rows);
+        if (rows == 4)
+            add(TETRISES, 1);
+        if (tSpin)
+        {
+            tSpins++;
+            Metrics.TSPINS.increment();
+        }
+        if (!analyzed && ((movedLeft && movedRight) || (turnsCW > 0 && turnsCCW > 0)
+                || turnsCW >= 3 || turnsCCW >= 3))
+        {
+            faults++;
+            Metrics.FINESSE_FAULTS.increment();
+        }
+        newPiece();
+    }
+
+    /**
+     * Leaves finesse faults to a FinesseAnalyzer, which reports them through onFinesse.
+     */
+    public synchronized void useAnalyzer()
+    {
+        analyzed = true;
+    }
+
+    /**
+     * Records the result of analyzing the finesse of a tetrad.
+     * @param inputs    The inputs spent on the tetrad
+     * @param needed    The fewest inputs that would have placed it in the same place
+     */
+    public synchronized void onFinesse(int inputs, int needed)
+    {
+        if (inputs > needed)
+        {
+            faults++;
+            Metrics.FINESSE_FAULTS.increment();
+        }
+    }
+
+    /**
+     * Forgets the inputs spent on the last tetrad.
+     */
+    private void newPiece()
+    {
+        movedLeft = false;
+        movedRight = false;
+        turnsCW = 0;
+        turnsCCW = 0;
+    }
+
+    /**
+     * Records the end of a frame. Every fps frames, the window moves on by a second.
+     * @param score The score at the end of the frame
+     */
+    public synchronized void onFrame(int score)
+    {
+        add(SCORE, score - lastScore);
+        lastScore = score;
+        frames++;
+        if (frames % fps == 0)
+        {
+            seconds++;
+            current = (current + 1) % WINDOW_SECONDS;
+            for (int kind = 0; kind < KINDS; kind++)
+            {
+                sums[kind] -= buckets[kind][current];
+                buckets[kind][current] = 0;
+            }
+            if (publish)
+                publish();
+        }
+    }
+
+    /**
+     * Publishes the rates to the gauges of Metrics.
+     */
+    private void publish()
+    {
+        Metrics.PIECES_PER_SECOND.set(getPiecesPerSecond());
+        Metrics.INPUTS_PER_PIECE.set(getInputsPerPiece());
+        Metrics.LINES_PER_MINUTE.set(getLinesPerMinute());
+        Metrics.TETRIS_RATE.set(getTetrisRate());
+        Metrics.SCORE_PER_MINUTE.set(getScorePerMinute());
+    }
+
+    /**
+     * Returns the length of the window, which is shorter than WINDOW_SECONDS at the start of a
+     * game.
+     * @return  The seconds of play the rates are taken over
+     */
+    private double windowSeconds()
+    {
+        int full = Math.min(seconds, WINDOW_SECONDS - 1);
+        return full + (frames % fps) / (double) fps;
+    }
+
+    /**
+     * Returns the rate of a kind of event over the window.
+     * @param kind  The kind of event
+     * @return      The events per second of play
+     */
+    private double perSecond(int kind)
+    {
+        double window = windowSeconds();
+        return window == 0 ? 0 : sums[kind] / window;
+    }
+
+    /**
+     * Returns the tetrads locked per second over the last minute.
+     * @return  The pieces per second
+     */
+    public synchronized double getPiecesPerSecond()
+    {
+        return perSecond(PIECES);
+    }
+
+    /**
+     * Returns the inputs per tetrad locked over the last minute.
+     * @return  The inputs per piece
+     */
+    public synchronized double getInputsPerPiece()
+    {
+        return sums[PIECES] == 0 ? 0 : sums[INPUTS] / (double) sums[PIECES];
+    }
+
+    /**
+     * Returns the lines cleared per minute over the last minute.
+     * @return  The lines per minute
+     */
+    public synchronized double getLinesPerMinute()
+    {
+        return perSecond(LINES) * 60;
+    }
+
+    /**
+     * Returns the fraction of the lines cleared over the last minute that were cleared four at
+     * once.
+     * @return  The tetris rate (0 - 1)
+     */
+    public synchronized double getTetrisRate()
+    {
+        return sums[LINES] == 0 ? 0 : 4 * sums[TETRISES] / (double) sums[LINES];
+    }
+
+    /**
+     * Returns the points scored per minute over the last minute.
+     * @return  The score per minute
+     */
+    public synchronized double getScorePerMinute()
+    {
+        return perSecond(SCORE) * 60;
+    }
+
+    /**
+     * Returns the number of T-spins in the game.
+     * @return  The number of T-spins
+     */
+    public synchronized int getTSpins()
+    {
+        return tSpins;
+    }
+
+    /**
+     * Returns the number of finesse faults in the game.
+     * @return  The number of tetrads placed with more inputs than needed
+     */
+    public synchronized int getFinesseFaults()
+    {
+        return faults;
+    }
+}
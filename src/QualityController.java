@@ -0,0 +1,183 @@
+/**
+ * A QualityController turns the visual effects down when frames take too long and back up when
+ * there is time to spare. The game reports how long each step takes and the renderer reports how
+ * long each paint takes; both are smoothed and added together into the cost of a frame, which
+ * is compared against the frame budget once per step.
+ *
+ * There are four quality levels. FULL draws everything, NO_PARTICLES drops the particles,
+ * FLASH_ONLY also drops the trails and line clear glows, and NO_EFFECTS draws no effects at all.
+ * The level only drops after the cost has stayed over the budget for a number of frames in a
+ * row, and only rises after the cost has stayed well under it for much longer, so the level
+ * does not flicker back and forth. The current level and the reason it was last changed can be
+ * read at any time. The level can also be fixed, for painting where frame times do not matter,
+ * such as exporting a replay.
+ *
+ * @author Pranav Sukesh
+ * @version 3/31/2023
+ */
+public class QualityController
+{
+    public static final int NO_EFFECTS = 0;
+    public static final int FLASH_ONLY = 1;
+    public static final int NO_PARTICLES = 2;
+    public static final int FULL = 3;
+
+    private static final String[] NAMES = {"no effects", "flash only", "no particles", "full"};
+
+    private static final int DOWN_FRAMES = 30;
+    private static final int UP_FRAMES = 180;
+
+    private long budget;
+    private long logicAverage;
+    private long paintAverage;
+    private int overFrames;
+    private int underFrames;
+    private int level;
+    private String reason;
+    private boolean fixed;
+
+    /**
+     * Constructs a controller at full quality for frames at 60 fps.
+     */
+    public QualityController()
+    {
+        this(1000000000L / 60);
+    }
+
+    /**
+     * Constructs a controller at full quality for the given frame budget.
+     * @param budget    The time one frame may take in nanoseconds
+     */
+    public QualityController(long budget)
+    {
+        this.budget = budget;
+        level = FULL;
+        reason = "started at full quality";
+    }
+
+    /**
+     * Reports how long the last step of the game took, and reconsiders the quality level.
+     * @param nanos The time the step took in nanoseconds
+     */
+    public synchronized void recordLogic(long nanos)
+    {
+        logicAverage += (nanos - logicAverage) / 8;
+        if (fixed)
+            return;
+
+        long cost = logicAverage + paintAverage;
+        if (cost > budget * 3 / 4)
+        {
+            overFrames++;
+            underFrames = 0;
+            if (overFrames >= DOWN_FRAMES && level > NO_EFFECTS)
+                change(level - 1, cost, "over", budget * 3 / 4);
+        }
+        else if (cost < budget * 2 / 5)
+        {
+            underFrames++;
+            overFrames = 0;
+            if (underFrames >= UP_FRAMES && level < FULL)
+                change(level + 1, cost, "under", budget * 2 / 5);
+        }
+        else
+        {
+            overFrames = 0;
+            underFrames = 0;
+        }
+    }
+
+    /**
+     * Reports how long the last paint of the board took.
+     * @param nanos The time the paint took in nanoseconds
+     */
+    public synchronized void recordPaint(long nanos)
+    {
+        paintAverage += (nanos - paintAverage) / 8;
+    }
+
+    /**
+     * Moves to a new quality level and records why.
+     * @param newLevel  The new quality level
+     * @param cost      The smoothed cost of a frame in nanoseconds
+     * @param direction "over" or "under", for the reason
+     * @param threshold The threshold the cost crossed in nanoseconds
+     */
+    private void change(int newLevel, long cost, String direction, long threshold)
+    {
+        reason = String.format("%s -> %s: frame cost %.2f ms (logic %.2f, paint %.2f) %s "
+                        + "%.2f ms", NAMES[level], NAMES[newLevel], cost / 1e6,
+                logicAverage / 1e6, paintAverage / 1e6, direction, threshold / 1e6);
+        level = newLevel;
+        overFrames = 0;
+        underFrames = 0;
+    }
+
+    /**
+     * Fixes the quality at the given level. Frame times are still averaged but no longer
+     * change the level.
+     * @param newLevel  The quality level to keep (NO_EFFECTS, FLASH_ONLY, NO_PARTICLES or FULL)
+     */
+    public synchronized void fixLevel(int newLevel)
+    {
+        level = newLevel;
+        fixed = true;
+        overFrames = 0;
+        underFrames = 0;
+        reason = "fixed at " + NAMES[newLevel];
+    }
+
+    /**
+     * Returns the current quality level (NO_EFFECTS, FLASH_ONLY, NO_PARTICLES or FULL).
+     * @return  The current quality level
+     */
+    public synchronized int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Returns the name of the current quality level.
+     * @return  The name of the current quality level
+     */
+    public synchronized String getLevelName()
+    {
+        return NAMES[level];
+    }
+
+    /**
+     * Returns the reason the quality level was last changed.
+     * @return  The reason for the last change
+     */
+    public synchronized String getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * Returns true if particles should be emitted and drawn.
+     * @return  True if particles are shown at the current level
+     */
+    public synchronized boolean showParticles()
+    {
+        return level >= FULL;
+    }
+
+    /**
+     * Returns true if trails and line clear glows should be added and drawn.
+     * @return  True if trails are shown at the current level
+     */
+    public synchronized boolean showTrails()
+    {
+        return level >= NO_PARTICLES;
+    }
+
+    /**
+     * Returns true if the flash of a dropped tetrad should be added and drawn.
+     * @return  True if flashes are shown at the current level
+     */
+    public synchronized boolean showFlashes()
+    {
+        return level >= FLASH_ONLY;
+    }
+}
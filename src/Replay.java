@@ -0,0 +1,216 @@
+import java.io.*;
+
+/**
+ * A Replay is a record of a game of Tetris that can be played back exactly: the geometry of the
+ * board, the seed of the random shapes, and every input the player made along with the frame it
+ * was made in. Garbage lines received from an opponent are recorded as inputs too, one per line.
+ * A game records its own replay as it is played.
+ *
+ * To play a replay back, a new game is made with the same configuration and seed, and before
+ * each step the inputs recorded in that frame are applied to it with apply.
+ *
+ * @author Pranav Sukesh
+ * @version 4/3/2023
+ */
+public class Replay
+{
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN = 2;
+    public static final int ROTATE_CW = 3;
+    public static final int ROTATE_CCW = 4;
+    public static final int HARD_DROP = 5;
+    public static final int HOLD = 6;
+    public static final int GARBAGE = 7;
+
+    private static final int MAGIC = 0x54524550;
+
+    private int width, height, previewCount;
+    private long seed;
+    private int[] events;
+    private int count;
+    private int frames;
+
+    /**
+     * Constructs an empty replay of a game with the given configuration and seed.
+     * @param config    The geometry of the board
+     * @param seed      The seed of the random shapes
+     */
+    public Replay(BoardConfig config, long seed)
+    {
+        width = config.getWidth();
+        height = config.getHeight();
+        previewCount = config.getPreviewCount();
+        this.seed = seed;
+        events = new int[256];
+        count = 0;
+        frames = 0;
+    }
+
+    /**
+     * Records an input made in the given frame.
+     * @param frame     The number of frames played before the input was made
+     * @param action    The input (LEFT, RIGHT, DOWN, ROTATE_CW, ROTATE_CCW, HARD_DROP, HOLD or
+     *                  GARBAGE)
+     */
+    public synchronized void record(int frame, int action)
+    {
+        if (count == events.length)
+        {
+            int[] bigger = new int[events.length * 2];
+            System.arraycopy(events, 0, bigger, 0, count);
+            events = bigger;
+        }
+        events[count++] = frame << 3 | action;
+    }
+
+    /**
+     * Sets the number of frames the game lasted.
+     * @param frames    The number of frames played
+     */
+    public synchronized void setFrames(int frames)
+    {
+        this.frames = frames;
+    }
+
+    /**
+     * Returns the number of frames the game lasted.
+     * @return  The number of frames played
+     */
+    public synchronized int getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * Returns the geometry of the board of the game.
+     * @return  The geometry of the board
+     */
+    public BoardConfig getConfig()
+    {
+        return new BoardConfig(width, height, previewCount);
+    }
+
+    /**
+     * Returns the seed of the random shapes of the game.
+     * @return  The seed of the random shapes
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Returns the number of inputs recorded.
+     * @return  The number of inputs
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Forgets every input after the given number of inputs, so that frames played again (after
+     * a game is restored to an earlier state) are not recorded twice.
+     * @param size  The number of inputs to keep
+     */
+    public synchronized void truncate(int size)
+    {
+        count = Math.min(count, size);
+    }
+
+    /**
+     * Returns the frame the input at the given index was made in.
+     * @param i     The index of the input
+     * @return      The number of frames played before the input was made
+     */
+    public synchronized int getFrame(int i)
+    {
+        return events[i] >>> 3;
+    }
+
+    /**
+     * Returns the input at the given index.
+     * @param i     The index of the input
+     * @return      The input
+     */
+    public synchronized int getAction(int i)
+    {
+        return events[i] & 7;
+    }
+
+    /**
+     * Makes the given input in a game.
+     * @param game      The game to make the input in
+     * @param action    The input
+     */
+    public static void apply(Tetris game, int action)
+    {
+        if (action == LEFT)
+            game.moveLeft();
+        else if (action == RIGHT)
+            game.moveRight();
+        else if (action == DOWN)
+            game.moveDown();
+        else if (action == ROTATE_CW)
+            game.rotateCW();
+        else if (action == ROTATE_CCW)
+            game.rotateCCW();
+        else if (action == HARD_DROP)
+            game.hardDrop();
+        else if (action == HOLD)
+            game.hold();
+        else if (action == GARBAGE)
+            game.receiveGarbage(1);
+    }
+
+    /**
+     * Writes this replay to a file.
+     * @param file  The file to write to
+     * @throws IOException  If the file cannot be written
+     */
+    public synchronized void save(File file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(previewCount);
+            out.writeLong(seed);
+            out.writeInt(frames);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++)
+                out.writeInt(events[i]);
+        }
+    }
+
+    /**
+     * Reads a replay from a file written by save.
+     * @param file  The file to read from
+     * @return      The replay in the file
+     * @throws IOException  If the file cannot be read or is not a replay
+     */
+    public static Replay load(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a replay");
+            int width = in.readInt();
+            int height = in.readInt();
+            int previewCount = in.readInt();
+            Replay replay = new Replay(new BoardConfig(width, height, previewCount),
+                    in.readLong());
+            replay.frames = in.readInt();
+            int count = in.readInt();
+            replay.events = new int[Math.max(1, count)];
+            for (int i = 0; i < count; i++)
+                replay.events[i] = in.readInt();
+            replay.count = count;
+            return replay;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The ReplayExporter turns a Replay into footage without a window: it plays the replay back
+ * through a headless game, paints every frame into an offscreen image with a BoardRenderer (the
+ * same painting the BlockDisplay does), and writes the frames out as numbered PNG files. Every
+ * effect is drawn at full quality: offline frames take as long as they take, so the quality
+ * controller and the particle limit are kept from turning effects down.
+ *
+ * Playing and painting happen on one thread, since each frame depends on the last. Encoding the
+ * PNGs is the slow part, so it is done by one encoder thread per core. The two stages are joined
+ * by bounded queues: painted frames wait in one queue for an encoder, and encoded images go back
+ * through a pool of free images to be painted again, so the painter can only run a few frames
+ * ahead and memory use stays fixed.
+ *
+ * Usage: java ReplayExporter replay-file output-dir [block-size]
+ *    or: java ReplayExporter --bot seconds output-dir [block-size]
+ * The second form records a game played by a random bot for the given number of seconds first.
+ *
+ * @author Pranav Sukesh
+ * @version 4/3/2023
+ */
+public class ReplayExporter
+{
+    private static final int FPS = 60;
+    private static final int DROP_EVERY = 45;
+    private static final float PNG_QUALITY = 0.9f;
+
+    private Replay replay;
+    private File outDir;
+    private int blockSize;
+    private int encoders;
+
+    /**
+     * Exports a replay file, or a bot game, to a directory of PNG files.
+     * @param args  The replay file (or --bot and a number of seconds), the output directory and
+     *              optionally the block size
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2 || (args[0].equals("--bot") && args.length < 3))
+        {
+            System.err.println("usage: ReplayExporter replay-file output-dir [block-size]");
+            System.err.println("       ReplayExporter --bot seconds output-dir [block-size]");
+            System.exit(1);
+        }
+
+        Replay replay;
+        int next;
+        if (args[0].equals("--bot"))
+        {
+            replay = recordBot(Integer.parseInt(args[1]) * FPS);
+            next = 2;
+        }
+        else
+        {
+            replay = Replay.load(new File(args[0]));
+            next = 1;
+        }
+        File outDir = new File(args[next]);
+        int blockSize = args.length > next + 1 ? Integer.parseInt(args[next + 1]) : 20;
+
+        ReplayExporter exporter = new ReplayExporter(replay, outDir, blockSize,
+                Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        int frames = exporter.export();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("exported %d frames (%.1f s of game) in %.2f s, %.1fx real time%n",
+                frames, frames / (double) FPS, seconds, frames / (double) FPS / seconds);
+    }
+
+    /**
+     * Plays a game with a random bot for the given number of frames and returns its replay.
+     * @param frames    The number of frames to play
+     * @return          The replay of the game
+     */
+    private static Replay recordBot(int frames)
+    {
+        Tetris game = new Tetris(new BoardConfig(), true, 20230403L);
+        Random rand = new Random(1);
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int action = rand.nextInt(8);
+            if (action == 0)
+                game.moveLeft();
+            else if (action == 1)
+                game.moveRight();
+            else if (action == 2)
+                game.rotateCW();
+            if (frame % DROP_EVERY == DROP_EVERY - 1)
+                game.hardDrop();
+            if (game.step())
+                break;
+        }
+        return game.getReplay();
+    }
+
+    /**
+     * Constructs an exporter of a replay.
+     * @param replay    The replay to export
+     * @param outDir    The directory to write the frames to
+     * @param blockSize The size of a cell in pixels
+     * @param encoders  The number of encoder threads
+     */
+    public ReplayExporter(Replay replay, File outDir, int blockSize, int encoders)
+    {
+        this.replay = replay;
+        this.outDir = outDir;
+        this.blockSize = blockSize;
+        this.encoders = Math.max(1, encoders);
+    }
+
+    /**
+     * Plays the replay back and writes every frame to the output directory, returning once all
+     * the frames have been written.
+     * @return  The number of frames written
+     * @throws IOException          If the output directory cannot be made or a frame cannot be
+     *                              written
+     * @throws InterruptedException If the export is interrupted
+     */
+    public int export() throws IOException, InterruptedException
+    {
+        if (!outDir.isDirectory() && !outDir.mkdirs())
+            throw new IOException("cannot make " + outDir);
+
+        Tetris game = new Tetris(replay.getConfig(), true, replay.getSeed());
+        if (!game.getAnim())
+            game.haltAnims();
+        game.getQuality().fixLevel(QualityController.FULL);
+        game.getOverlay().getParticles().setAdaptive(false);
+        BoardRenderer renderer = new BoardRenderer(game.getBoard(), game.getConfig(),
+                game.getOverlay(), blockSize);
+        renderer.setPreview(game.getPreview());
+
+        int poolSize = encoders * 2;
+        BlockingQueue<BufferedImage> free = new ArrayBlockingQueue<BufferedImage>(poolSize);
+        BlockingQueue<Frame> painted = new ArrayBlockingQueue<Frame>(poolSize);
+        for (int i = 0; i < poolSize; i++)
+            free.add(new BufferedImage(renderer.getWidth(), renderer.getHeight(),
+                    BufferedImage.TYPE_INT_RGB));
+
+        Encoder[] threads = new Encoder[encoders];
+        for (int i = 0; i < encoders; i++)
+        {
+            threads[i] = new Encoder(painted, free);
+            threads[i].start();
+        }
+
+        int frames = 0;
+        int next = 0;
+        boolean over = false;
+        try
+        {
+            while (!over && frames < replay.getFrames())
+            {
+                while (next < replay.size() && replay.getFrame(next) == frames)
+                    Replay.apply(game, replay.getAction(next++));
+                over = game.step();
+                renderer.setHeldShape(game.getHeldShape());
+
+                BufferedImage image = free.take();
+                Graphics2D g = image.createGraphics();
+                g.setColor(BoardRenderer.BACKGROUND);
+                g.fillRect(0, 0, image.getWidth(), image.getHeight());
+                renderer.paint(g);
+                g.dispose();
+                painted.put(new Frame(frames, image));
+                frames++;
+            }
+        }
+        finally
+        {
+            for (int i = 0; i < encoders; i++)
+                painted.put(new Frame(-1, null));
+            for (Encoder t : threads)
+                t.join();
+        }
+
+        for (Encoder t : threads)
+            if (t.error != null)
+                throw t.error;
+        return frames;
+    }
+
+    /**
+     * A Frame is a painted image and its number. A frame numbered -1 tells an encoder to stop.
+     */
+    private static class Frame
+    {
+        private int number;
+        private BufferedImage image;
+
+        /**
+         * Constructs a frame.
+         * @param number    The number of the frame
+         * @param image     The painted image
+         */
+        public Frame(int number, BufferedImage image)
+        {
+            this.number = number;
+            this.image = image;
+        }
+    }
+
+    /**
+     * An Encoder is a thread that takes painted frames, writes them as PNG files and hands their
+     * images back to the pool of free images. Each encoder keeps its own PNG writer, set to a
+     * light compression level, since frames of a board compress well even at low levels.
+     */
+    private class Encoder extends Thread
+    {
+        private BlockingQueue<Frame> painted;
+        private BlockingQueue<BufferedImage> free;
+        private IOException error;
+        private ImageWriter writer;
+        private ImageWriteParam param;
+
+        /**
+         * Constructs an encoder.
+         * @param painted   The queue of painted frames
+         * @param free      The pool of free images
+         */
+        public Encoder(BlockingQueue<Frame> painted, BlockingQueue<BufferedImage> free)
+        {
+            this.painted = painted;
+            this.free = free;
+            writer = ImageIO.getImageWritersByFormatName("png").next();
+            param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed())
+            {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(PNG_QUALITY);
+            }
+        }
+
+        /**
+         * Writes an image to a PNG file.
+         * @param image The image to write
+         * @param file  The file to write to
+         * @throws IOException  If the file cannot be written
+         */
+        private void write(BufferedImage image, File file) throws IOException
+        {
+            file.delete();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file))
+            {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+        }
+
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    Frame frame = painted.take();
+                    if (frame.number < 0)
+                        return;
+                    try
+                    {
+                        if (error == null)
+                            write(frame.image, new File(outDir,
+                                    String.format("frame%06d.png", frame.number)));
+                    }
+                    catch (IOException e)
+                    {
+                        error = e;
+                    }
+                    free.put(frame.image);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                //stop encoding
+            }
+            finally
+            {
+                writer.dispose();
+            }
+        }
+    }
+}
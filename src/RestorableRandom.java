@@ -0,0 +1,59 @@
+import java.util.Random;
+
+/**
+ * A RestorableRandom is a Random whose state can be read and set, so a game that draws from it
+ * can be saved and restored exactly. It produces the same numbers as java.util.Random for the
+ * same seed, using the same 48-bit linear congruential generator, so games recorded before it
+ * was used still play back the same way.
+ *
+ * @author Pranav Sukesh
+ * @version 4/6/2023
+ */
+public class RestorableRandom extends Random
+{
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    /**
+     * Constructs a generator with the given seed.
+     * @param seed  The seed of the generator
+     */
+    public RestorableRandom(long seed)
+    {
+        super(seed);
+    }
+
+    public synchronized void setSeed(long seed)
+    {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    protected int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Returns the state of the generator.
+     * @return  The state of the generator
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Sets the state of the generator to one returned by getState.
+     * @param state The state to set
+     */
+    public void setState(long state)
+    {
+        this.state = state;
+    }
+}
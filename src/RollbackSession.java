@@ -0,0 +1,677 @@
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A RollbackSession plays a versus game of Tetris against a player on another computer. Both
+ * computers run both games, and the only thing sent between them is the inputs of each player
+ * for each frame, over UDP.
+ *
+ * Local inputs are made a few frames late (the input delay), which gives them time to reach the
+ * other computer before they are needed there. When the inputs of the remote player for a frame
+ * have not arrived yet, the session guesses that the remote player pressed nothing and plays on.
+ * The state of both games is saved before every frame (see GameState), and when the real inputs
+ * arrive and the guess was wrong, both games are put back to the frame of the first wrong guess
+ * and played forward again to the current frame, all within one frame. Frames played again are
+ * quiet, so their effects and sounds do not repeat. The session never runs more than
+ * MAX_ROLLBACK frames ahead of the last inputs it has from the remote player; if it would, it
+ * waits for them instead.
+ *
+ * The inputs of a player for a frame are kept as a short list in the order they were made, up to
+ * MAX_FRAME_INPUTS of them, so pressing a key twice in a frame moves twice and a rotation made
+ * before a shift is replayed before it, just as in a local game. Inputs made after the list of a
+ * frame is full wait for the next frame. Every packet carries all the local inputs the other side
+ * has not acknowledged yet, each frame as a count followed by its inputs, so a lost packet is
+ * made up for by the next one.
+ *
+ * Usage: java RollbackSession local-port remote-host remote-port player seed
+ *    or: java RollbackSession --loopback seconds [lag-frames]
+ * The first form plays against another session; player is 0 on one side and 1 on the other, and
+ * both sides must use the same seed. The second form plays two sessions with random bots against
+ * each other over the loopback interface, holding every packet back for the given number of
+ * frames, and checks that both sides end in the same state.
+ *
+ * @author Pranav Sukesh
+ * @version 4/6/2023
+ */
+public class RollbackSession implements KeyListener
+{
+    public static final int INPUT_DELAY = 2;
+    public static final int MAX_ROLLBACK = 8;
+    public static final int MAX_FRAME_INPUTS = 8;
+
+    private static final int FPS = 60;
+    private static final long FRAME_NANOS = 1000000000L / FPS;
+    private static final int HISTORY = 32;
+    private static final int MAGIC = 0x54524f32;
+    private static final int LINGER_FRAMES = 30;
+
+    private Tetris[] players;
+    private int local, remote;
+    private int inputDelay;
+    private GameState[][] states;
+    private boolean[][] outs;
+    private boolean[] out;
+    private byte[][][] inputs;
+    private byte[][] inputCounts;
+
+    private int frame;
+    private int latestLocal;
+    private int lastRemote;
+    private int remoteAck;
+    private int rollbackFrom;
+    private ArrayBlockingQueue<Integer> pending;
+    private long deadline;
+
+    private DatagramChannel channel;
+    private ByteBuffer sendBuffer, receiveBuffer;
+    private int lag;
+    private int ticks;
+    private ArrayDeque<byte[]> held;
+    private ArrayDeque<Integer> heldUntil;
+
+    private int rollbacks, rollbackFrames, maxRollbackFrames, stalls;
+    private long rollbackNanos, maxRollbackNanos;
+
+    /**
+     * Plays a game against another session, or two bot sessions against each other over the
+     * loopback interface.
+     * @param args  The local port, remote host, remote port, player and seed, or --loopback, a
+     *              number of seconds and optionally the number of frames packets are held back
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length >= 2 && args[0].equals("--loopback"))
+        {
+            loopback(Integer.parseInt(args[1]) * FPS,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 4);
+            return;
+        }
+        if (args.length < 5)
+        {
+            System.err.println("usage: RollbackSession local-port remote-host remote-port "
+                    + "player seed");
+            System.err.println("       RollbackSession --loopback seconds [lag-frames]");
+            System.exit(1);
+        }
+
+        RollbackSession session = new RollbackSession(Integer.parseInt(args[3]),
+                Long.parseLong(args[4]), INPUT_DELAY);
+        session.connect(Integer.parseInt(args[0]),
+                new InetSocketAddress(args[1], Integer.parseInt(args[2])));
+        session.show();
+        int winner = session.play();
+        System.out.println(winner < 0 ? "draw" : "player " + (winner + 1) + " wins");
+        System.out.println(session.getStats());
+        session.close();
+    }
+
+    /**
+     * Plays two sessions with random bots against each other over the loopback interface and
+     * checks that both end in the same state.
+     * @param frames    The most frames to play
+     * @param lag       The number of frames every packet is held back
+     */
+    private static void loopback(int frames, int lag) throws Exception
+    {
+        long seed = new Random().nextLong();
+        RollbackSession[] sessions = new RollbackSession[2];
+        for (int i = 0; i < 2; i++)
+        {
+            sessions[i] = new RollbackSession(i, seed, INPUT_DELAY);
+            sessions[i].setLag(lag);
+        }
+        sessions[0].connect(0, null);
+        sessions[1].connect(0, null);
+        sessions[0].setRemote(sessions[1].getLocalAddress());
+        sessions[1].setRemote(sessions[0].getLocalAddress());
+
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < 2; i++)
+        {
+            RollbackSession session = sessions[i];
+            Random rand = new Random(seed + i);
+            threads[i] = new Thread(() -> {
+                int count = 0;
+                while (!session.isFinished() && session.getFrame() < frames)
+                {
+                    if (rand.nextInt(6) == 0)
+                    {
+                        //sometimes a quick burst, to check that counts and order come across
+                        int presses = 1 + rand.nextInt(3);
+                        for (int k = 0; k < presses; k++)
+                            session.input(rand.nextInt(4));
+                    }
+                    if (++count % 30 == 0)
+                        session.input(Replay.HARD_DROP);
+                    session.waitForFrame();
+                    session.advance();
+                }
+                session.linger();
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        int common = Math.min(sessions[0].getConfirmedFrame(), sessions[1].getConfirmedFrame());
+        for (int i = 0; i < 2; i++)
+        {
+            System.out.println("session " + i + ": " + sessions[i].getStats());
+            System.out.printf("  checksum at frame %d: %016x%n", common,
+                    sessions[i].checksumAt(common));
+        }
+        System.out.println(sessions[0].checksumAt(common) == sessions[1].checksumAt(common)
+                ? "in sync" : "DESYNC");
+        for (RollbackSession session : sessions)
+            session.close();
+    }
+
+    /**
+     * Constructs a session for the given player of a game with the given seed.
+     * @param local         The index of the local player (0 or 1)
+     * @param seed          The seed of the random shapes, the same on both sides
+     * @param inputDelay    The number of frames local inputs are made late
+     */
+    public RollbackSession(int local, long seed, int inputDelay)
+    {
+        this.local = local;
+        remote = 1 - local;
+        this.inputDelay = inputDelay;
+        players = new Tetris[2];
+        states = new GameState[HISTORY][2];
+        outs = new boolean[HISTORY][2];
+        out = new boolean[2];
+        inputs = new byte[HISTORY][2][MAX_FRAME_INPUTS];
+        inputCounts = new byte[HISTORY][2];
+        for (int i = 0; i < 2; i++)
+            players[i] = new Tetris(new BoardConfig(), true, seed);
+        for (int f = 0; f < HISTORY; f++)
+        {
+            for (int i = 0; i < 2; i++)
+                states[f][i] = new GameState(players[i].getConfig());
+        }
+
+        frame = 0;
+        latestLocal = inputDelay - 1;
+        lastRemote = inputDelay - 1;
+        remoteAck = -1;
+        rollbackFrom = -1;
+        pending = new ArrayBlockingQueue<Integer>(HISTORY * MAX_FRAME_INPUTS);
+        sendBuffer = ByteBuffer.allocate(16 + HISTORY * (1 + MAX_FRAME_INPUTS));
+        receiveBuffer = ByteBuffer.allocate(1500);
+        held = new ArrayDeque<byte[]>();
+        heldUntil = new ArrayDeque<Integer>();
+    }
+
+    /**
+     * Opens the UDP socket of this session.
+     * @param port      The local port to listen on (0 for any free port)
+     * @param remote    The address of the other session (may be null, and set later)
+     * @throws IOException  If the socket cannot be opened
+     */
+    public void connect(int port, InetSocketAddress remote) throws IOException
+    {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        if (remote != null)
+            setRemote(remote);
+    }
+
+    /**
+     * Sets the address of the other session.
+     * @param remote    The address of the other session
+     * @throws IOException  If the socket cannot be connected
+     */
+    public void setRemote(InetSocketAddress remote) throws IOException
+    {
+        channel.connect(remote);
+    }
+
+    /**
+     * Returns the local address of the socket of this session.
+     * @return  The address the other session should send to
+     * @throws IOException  If the address cannot be read
+     */
+    public InetSocketAddress getLocalAddress() throws IOException
+    {
+        InetSocketAddress address = (InetSocketAddress) channel.getLocalAddress();
+        return new InetSocketAddress("127.0.0.1", address.getPort());
+    }
+
+    /**
+     * Closes the socket of this session.
+     * @throws IOException  If the socket cannot be closed
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Holds every received packet back for the given number of frames, to try out the session
+     * on a fast network as if it were a slow one.
+     * @param lag   The number of frames to hold packets back
+     */
+    public void setLag(int lag)
+    {
+        this.lag = lag;
+    }
+
+    /**
+     * Opens a window showing both boards and taking the keys of the local player, who can use
+     * either the keys of the first or the second player of a Match.
+     */
+    public void show()
+    {
+        BoardCompositor compositor = new BoardCompositor();
+        for (Tetris player : players)
+        {
+            if (!player.getAnim())
+                player.haltAnims();
+            compositor.add(player);
+        }
+        new SpectatorDisplay(compositor, "Tetris - player " + (local + 1), this);
+    }
+
+    /**
+     * Makes an input for the local player. It is sent with the next frame that has room for it
+     * and made after the input delay. The input is dropped if too many are already waiting.
+     * @param action    The input, as one of the actions of Replay from LEFT to HOLD
+     */
+    public void input(int action)
+    {
+        pending.offer(action);
+    }
+
+    /**
+     * Returns the number of frames played.
+     * @return  The current frame
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Returns the last frame that has been played with the real inputs of both players, and so
+     * will never be rolled back.
+     * @return  The last confirmed frame
+     */
+    public int getConfirmedFrame()
+    {
+        return Math.min(lastRemote, frame - 1);
+    }
+
+    /**
+     * Returns a checksum of both games at the start of the given frame, which must be one of the
+     * last few frames played.
+     * @param f     The frame
+     * @return      A hash of the state of both games
+     */
+    public long checksumAt(int f)
+    {
+        GameState[] saved = states[f % HISTORY];
+        if (saved[0].getFrame() != f)
+            throw new IllegalArgumentException("frame " + f + " is no longer saved");
+        return saved[0].checksum() * 31 + saved[1].checksum();
+    }
+
+    /**
+     * Returns true if the game is over and the frame it ended on is confirmed.
+     * @return  True if the game is over for good
+     */
+    public boolean isFinished()
+    {
+        return (out[0] || out[1]) && frame - 1 <= lastRemote;
+    }
+
+    /**
+     * Returns the winner of the game, once it is finished.
+     * @return  The index of the winner, or -1 if both players went out on the same frame
+     */
+    public int getWinner()
+    {
+        if (out[0] == out[1])
+            return -1;
+        return out[0] ? 1 : 0;
+    }
+
+    /**
+     * Runs the session at 60 frames a second until the game is finished.
+     * @return  The index of the winner, or -1 if both players went out on the same frame
+     * @throws IOException  If the socket fails
+     */
+    public int play() throws IOException
+    {
+        while (!isFinished())
+        {
+            waitForFrame();
+            advance();
+        }
+        linger();
+        return getWinner();
+    }
+
+    /**
+     * Waits until it is time for the next frame.
+     */
+    private void waitForFrame()
+    {
+        if (deadline == 0)
+            deadline = System.nanoTime();
+        deadline += FRAME_NANOS;
+        long wait = deadline - System.nanoTime();
+        if (wait > 0)
+            LockSupport.parkNanos(wait);
+        else if (wait < -5 * FRAME_NANOS)
+            deadline = System.nanoTime();
+    }
+
+    /**
+     * Keeps sending the last inputs for a little while after the game is over, so the other
+     * side can confirm the end of the game too.
+     */
+    private void linger()
+    {
+        for (int i = 0; i < LINGER_FRAMES; i++)
+        {
+            waitForFrame();
+            try
+            {
+                receive();
+                send();
+            }
+            catch (IOException e)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs one frame of the session: takes in the inputs that arrived, rolls back and plays
+     * forward again if a guess was wrong, makes the local inputs and plays the next frame, and
+     * sends the local inputs. The next frame is not played if the session is too far ahead of
+     * the remote player or the game is over.
+     * @return  True if a new frame was played
+     */
+    public boolean advance()
+    {
+        ticks++;
+        try
+        {
+            receive();
+        }
+        catch (IOException e)
+        {
+            //carry on and guess the remote inputs
+        }
+
+        if (rollbackFrom >= 0)
+            rollback();
+
+        boolean played = false;
+        if (out[0] || out[1])
+        {
+            //the game is over unless a rollback changes it
+        }
+        else if (frame - lastRemote > MAX_ROLLBACK)
+        {
+            stalls++;
+        }
+        else
+        {
+            latestLocal = frame + inputDelay;
+            int slot = latestLocal % HISTORY;
+            int count = 0;
+            Integer action;
+            while (count < MAX_FRAME_INPUTS && (action = pending.poll()) != null)
+                inputs[slot][local][count++] = (byte) (int) action;
+            inputCounts[slot][local] = (byte) count;
+            simulate(frame);
+            frame++;
+            played = true;
+        }
+
+        try
+        {
+            send();
+        }
+        catch (IOException e)
+        {
+            //the inputs are sent again with the next packet
+        }
+        return played;
+    }
+
+    /**
+     * Puts both games back to the first frame that was played with a wrong guess and plays
+     * forward again to the current frame.
+     */
+    private void rollback()
+    {
+        long start = System.nanoTime();
+        int from = rollbackFrom;
+        rollbackFrom = -1;
+        for (int i = 0; i < 2; i++)
+        {
+            players[i].restoreState(states[from % HISTORY][i]);
+            out[i] = outs[from % HISTORY][i];
+            players[i].setQuiet(true);
+        }
+        for (int f = from; f < frame; f++)
+        {
+            simulate(f);
+            if (out[0] || out[1])
+            {
+                //the game really ended on this frame, so the frames after it never happened
+                frame = f + 1;
+                break;
+            }
+        }
+        for (int i = 0; i < 2; i++)
+            players[i].setQuiet(false);
+
+        long nanos = System.nanoTime() - start;
+        rollbacks++;
+        rollbackFrames += frame - from;
+        maxRollbackFrames = Math.max(maxRollbackFrames, frame - from);
+        rollbackNanos += nanos;
+        maxRollbackNanos = Math.max(maxRollbackNanos, nanos);
+    }
+
+    /**
+     * Plays one frame of both games, saving their states first. The inputs of the remote player
+     * are guessed to be nothing if they have not arrived yet.
+     * @param f     The frame to play
+     */
+    private void simulate(int f)
+    {
+        int slot = f % HISTORY;
+        for (int i = 0; i < 2; i++)
+        {
+            players[i].saveState(states[slot][i]);
+            outs[slot][i] = out[i];
+        }
+
+        for (int i = 0; i < 2; i++)
+        {
+            if (out[i])
+                continue;
+            int count = i == remote && f > lastRemote ? 0 : inputCounts[slot][i];
+            for (int k = 0; k < count; k++)
+                Replay.apply(players[i], inputs[slot][i][k]);
+            if (players[i].step())
+                out[i] = true;
+        }
+
+        for (int i = 0; i < 2; i++)
+        {
+            int garbage = players[i].takeOutgoingGarbage();
+            if (garbage > 0 && !out[i] && !out[1 - i])
+                players[1 - i].receiveGarbage(garbage);
+        }
+    }
+
+    /**
+     * Reads every packet that has arrived (after holding it back for the lag, if any) and takes
+     * in the inputs in it. The lag is counted in calls to advance rather than in frames played,
+     * since no frames are played while the session waits for the remote player.
+     * @throws IOException  If the socket fails
+     */
+    private void receive() throws IOException
+    {
+        while (true)
+        {
+            receiveBuffer.clear();
+            try
+            {
+                if (!channel.isConnected() || channel.read(receiveBuffer) <= 0)
+                    break;
+            }
+            catch (PortUnreachableException e)
+            {
+                //the other side is not listening yet
+                break;
+            }
+            receiveBuffer.flip();
+            if (lag == 0)
+            {
+                handle(receiveBuffer);
+            }
+            else
+            {
+                byte[] packet = new byte[receiveBuffer.remaining()];
+                receiveBuffer.get(packet);
+                held.add(packet);
+                heldUntil.add(ticks + lag);
+            }
+        }
+
+        while (!held.isEmpty() && heldUntil.peek() <= ticks)
+        {
+            heldUntil.poll();
+            handle(ByteBuffer.wrap(held.poll()));
+        }
+    }
+
+    /**
+     * Takes in the inputs of one packet. An input for a frame that was already played with a
+     * different guess marks that frame to be rolled back to. A packet with a frame that has too
+     * many inputs, or an input that is not one of LEFT to HOLD, is malformed, and the rest of it
+     * is ignored.
+     * @param packet    The packet, positioned at its start
+     */
+    private void handle(ByteBuffer packet)
+    {
+        if (packet.remaining() < 14 || packet.getInt() != MAGIC)
+            return;
+        int ack = packet.getInt();
+        int start = packet.getInt();
+        int count = packet.getShort();
+        remoteAck = Math.max(remoteAck, ack);
+
+        for (int i = 0; i < count && packet.hasRemaining(); i++)
+        {
+            int f = start + i;
+            int n = packet.get();
+            if (n < 0 || n > MAX_FRAME_INPUTS || packet.remaining() < n)
+                return;
+            int slot = f % HISTORY;
+            boolean next = f == lastRemote + 1;
+            for (int k = 0; k < n; k++)
+            {
+                byte action = packet.get();
+                if (action < Replay.LEFT || action > Replay.HOLD)
+                    return;
+                if (next)
+                    inputs[slot][remote][k] = action;
+            }
+            if (!next)
+                continue;
+            inputCounts[slot][remote] = (byte) n;
+            lastRemote = f;
+            if (f < frame && n != 0 && (rollbackFrom < 0 || f < rollbackFrom))
+                rollbackFrom = f;
+        }
+    }
+
+    /**
+     * Sends the local inputs the other side has not acknowledged yet, along with the last frame
+     * of remote inputs received.
+     * @throws IOException  If the socket fails
+     */
+    private void send() throws IOException
+    {
+        if (!channel.isConnected())
+            return;
+        int start = Math.max(remoteAck + 1, latestLocal - HISTORY + 1);
+        start = Math.max(start, 0);
+        int count = latestLocal - start + 1;
+
+        sendBuffer.clear();
+        sendBuffer.putInt(MAGIC);
+        sendBuffer.putInt(lastRemote);
+        sendBuffer.putInt(start);
+        sendBuffer.putShort((short) Math.max(0, count));
+        for (int f = start; f <= latestLocal; f++)
+        {
+            int slot = f % HISTORY;
+            sendBuffer.put(inputCounts[slot][local]);
+            sendBuffer.put(inputs[slot][local], 0, inputCounts[slot][local]);
+        }
+        sendBuffer.flip();
+        try
+        {
+            channel.write(sendBuffer);
+        }
+        catch (PortUnreachableException e)
+        {
+            //the other side is not listening yet
+        }
+    }
+
+    /**
+     * Returns a summary of the rollbacks and stalls of this session.
+     * @return  The statistics of the session, as one line of text
+     */
+    public String getStats()
+    {
+        return String.format("%d frames, %d rollbacks (%.1f frames avg, %d max), "
+                        + "rollback time %.3f ms avg, %.3f ms max, %d stalls",
+                frame, rollbacks, rollbacks == 0 ? 0.0 : rollbackFrames / (double) rollbacks,
+                maxRollbackFrames, rollbacks == 0 ? 0.0 : rollbackNanos / 1e6 / rollbacks,
+                maxRollbackNanos / 1e6, stalls);
+    }
+
+    public void keyPressed(KeyEvent e)
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            int action = Match.actionFor(i, e.getKeyCode());
+            if (action >= 0)
+            {
+                input(action);
+                return;
+            }
+        }
+    }
+
+    public void keyReleased(KeyEvent e)
+    {
+    }
+
+    public void keyTyped(KeyEvent e)
+    {
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SimulationRunner plays thousands of headless games of Tetris at once, each driven by a random
+ * bot, as fast as the machine allows, for load testing and balancing. Every game is completely
+ * separate: it has its own board, its own seeded random shapes and its own bot with its own random
+ * generator. The games are played quiet, so they do not count themselves in the Metrics or Flight
+ * Recorder events every game shares, which would have every worker contending on the same counters;
+ * the runner counts for them instead.
+ *
+ * The games are run on a work-stealing ForkJoinPool with cooperative ticking: each game is a task
+ * that plays SLICE_FRAMES frames and then puts itself back on the queue of the worker it ran on, so
+ * a few worker threads take turns over all the games, and an idle worker steals games from a busy
+ * one. When a game ends, a new one starts in its place, so the number of games in play stays the
+ * same. Ticks and finished games are counted in LongAdders, which the workers can add to without
+ * contending. The time of each frame is recorded in a histogram of each worker's own, and the
+ * histograms are added into the frame time of Metrics once the workers have stopped.
+ *
+ * Usage: java SimulationRunner [games] [seconds] [threads,...]
+ * Runs the given number of games (2000 if not given) for the given number of seconds (5 if not
+ * given) with each of the given numbers of worker threads (1, 2, 4 and so on up to the number
+ * of cores if not given), and prints the throughput of each as a scaling curve.
+ *
+ * @author Pranav Sukesh
+ * @version 4/8/2023
+ */
+public class SimulationRunner
+{
+    public static final int SLICE_FRAMES = 60;
+
+    private static final int DROP_EVERY = 20;
+
+    private int games;
+    private int threads;
+    private long seed;
+    private ForkJoinPool pool;
+    private volatile boolean stopping;
+    private LongAdder ticks, finished, lines;
+    private ConcurrentLinkedQueue<Histogram> workerTimes;
+    private ThreadLocal<Histogram> frameTimes;
+
+    /**
+     * Runs the simulation with each number of threads and prints a scaling curve.
+     * @param args  The number of games, the number of seconds and the numbers of threads
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] counts;
+        if (args.length > 2)
+        {
+            String[] parts = args[2].split(",");
+            counts = new int[parts.length];
+            for (int i = 0; i < parts.length; i++)
+                counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        else
+        {
+            int cores = Runtime.getRuntime().availableProcessors();
+            int n = 1;
+            while ((1 << n) < cores)
+                n++;
+            counts = new int[n + (cores > 1 ? 1 : 0)];
+            for (int i = 0; i < n; i++)
+                counts[i] = 1 << i;
+            counts[counts.length - 1] = cores;
+        }
+
+        System.out.printf("%d games, %d s per run, %d cores%n", games, seconds,
+                Runtime.getRuntime().availableProcessors());
+        //one run first so every run in the curve is measured with the game code compiled
+        new SimulationRunner(games, counts[0], 1L).run(seconds * 200L);
+
+        System.out.println("threads     ticks/s    games/s  lines/game  speedup");
+        double base = 0;
+        for (int threads : counts)
+        {
+            SimulationRunner runner = new SimulationRunner(games, threads, 20230408L);
+            double[] result = runner.run(seconds * 1000L);
+            if (base == 0)
+                base = result[0];
+            System.out.printf("%7d %11.0f %10.1f %11.2f %7.2fx%n", threads, result[0],
+                    result[1], result[2], result[0] / base);
+        }
+    }
+
+    /**
+     * Constructs a runner of the given number of games on the given number of threads.
+     * @param games     The number of games in play at once
+     * @param threads   The number of worker threads
+     * @param seed      The seed the seeds of every game and bot are drawn from
+     */
+    public SimulationRunner(int games, int threads, long seed)
+    {
+        this.games = games;
+        this.threads = threads;
+        this.seed = seed;
+        ticks = new LongAdder();
+        finished = new LongAdder();
+        lines = new LongAdder();
+        workerTimes = new ConcurrentLinkedQueue<Histogram>();
+        frameTimes = ThreadLocal.withInitial(this::newWorkerTimes);
+    }
+
+    /**
+     * Makes the histogram of frame times of a worker thread.
+     * @return  A new empty histogram, kept to be added into Metrics at the end of the run
+     */
+    private Histogram newWorkerTimes()
+    {
+        Histogram times = new Histogram(Metrics.FRAME_TIME.getName(),
+                Metrics.FRAME_TIME.getHelp());
+        workerTimes.add(times);
+        return times;
+    }
+
+    /**
+     * Plays the games for the given time, after a short warm up that is not counted. The frame
+     * times of the workers are added into Metrics once every game has stopped.
+     * @param millis    The time to play for in milliseconds
+     * @return          The throughput, as {ticks per second, games finished per second, lines
+     *                  cleared per finished game}
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public double[] run(long millis) throws InterruptedException
+    {
+        pool = new ForkJoinPool(threads);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < games; i++)
+            pool.execute(new GameTask(seeds.split()));
+
+        Thread.sleep(Math.min(1000, millis / 5));
+        ticks.reset();
+        finished.reset();
+        lines.reset();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long tickCount = ticks.sum();
+        long gameCount = finished.sum();
+        long lineCount = lines.sum();
+
+        stopping = true;
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        for (Histogram times : workerTimes)
+            Metrics.FRAME_TIME.add(times);
+        workerTimes.clear();
+        return new double[] {tickCount / seconds, gameCount / seconds,
+                gameCount == 0 ? 0 : lineCount / (double) gameCount};
+    }
+
+    /**
+     * A GameTask is one game in play and the bot playing it. Each run plays a slice of frames,
+     * starting a new game whenever one ends, and then puts the task back on the pool.
+     */
+    private class GameTask implements Runnable
+    {
+        private SplittableRandom rand;
+        private Tetris game;
+        private int frame;
+
+        /**
+         * Constructs a task that plays games with seeds drawn from the given generator.
+         * @param rand  The generator of this task alone
+         */
+        public GameTask(SplittableRandom rand)
+        {
+            this.rand = rand;
+            newGame();
+        }
+
+        /**
+         * Starts a new quiet game.
+         */
+        private void newGame()
+        {
+            game = new Tetris(new BoardConfig(), true, rand.nextLong());
+            game.setQuiet(true);
+            frame = 0;
+        }
+
+        public void run()
+        {
+            Histogram times = frameTimes.get();
+            for (int i = 0; i < SLICE_FRAMES; i++)
+            {
+                int action = rand.nextInt(8);
+                if (action == 0)
+                    game.moveLeft();
+                else if (action == 1)
+                    game.moveRight();
+                else if (action == 2)
+                    game.rotateCW();
+                if (frame % DROP_EVERY == DROP_EVERY - 1)
+                    game.hardDrop();
+                frame++;
+                long start = System.nanoTime();
+                boolean gameOver = game.step();
+                times.record(System.nanoTime() - start);
+                if (gameOver)
+                {
+                    finished.increment();
+                    lines.add(game.getLines());
+                    newGame();
+                }
+            }
+            ticks.add(SLICE_FRAMES);
+            if (!stopping)
+                pool.execute(this);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * A SpectatorClient watches a game streamed by a SpectatorServer without drawing it. It keeps
+ * its own copy of the board, starting from the first keyframe and applying every delta after
+ * it, along with the score and the falling tetrad from the header of the last frame. It is a
+ * stand-in for a real spectator, for trying out the server and measuring how much it sends.
+ *
+ * Usage: java SpectatorClient [host] [port] [seconds]
+ * Watches the game on the given host and port (localhost and 7777 if not given) for the given
+ * number of seconds (10 if not given) and prints what it received.
+ *
+ * @author Pranav Sukesh
+ * @version 4/7/2023
+ */
+public class SpectatorClient
+{
+    private Socket socket;
+    private DataInputStream in;
+    private byte[] cells;
+    private int rows, cols;
+    private int tick, score, level, lines;
+    private int shape, direction, centerRow, centerCol, heldShape;
+    private boolean synced;
+    private long bytes;
+    private int keyframes, deltas;
+
+    /**
+     * Watches a streamed game for a number of seconds and prints what was received.
+     * @param args  The host, port and number of seconds
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+        SpectatorClient client = new SpectatorClient(host, port);
+        long end = System.nanoTime() + seconds * 1000000000L;
+        while (System.nanoTime() < end && client.readFrame())
+        {
+            //keep watching
+        }
+        client.close();
+        System.out.println(client.getStats());
+        System.out.println("tick " + client.getTick() + ", score " + client.getScore()
+                + ", lines " + client.getLines());
+        for (int r = 0; r < client.getNumRows(); r++)
+        {
+            StringBuilder row = new StringBuilder();
+            for (int c = 0; c < client.getNumCols(); c++)
+                row.append(client.get(r, c) == Board.EMPTY ? '.' : '#');
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * Connects to a server.
+     * @param host  The host of the server
+     * @param port  The port of the server
+     * @throws IOException  If the server cannot be reached
+     */
+    public SpectatorClient(String host, int port) throws IOException
+    {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        cells = new byte[0];
+    }
+
+    /**
+     * Reads one frame from the server and applies it to the copy of the board.
+     * @return  True if a frame was read, false if the server closed the stream
+     * @throws IOException  If the stream is broken, or a delta arrives before any keyframe
+     */
+    public boolean readFrame() throws IOException
+    {
+        int length;
+        try
+        {
+            length = in.readInt();
+        }
+        catch (EOFException e)
+        {
+            return false;
+        }
+        bytes += 4 + length;
+
+        byte type = in.readByte();
+        tick = in.readInt();
+        score = in.readInt();
+        level = in.readShort();
+        lines = in.readInt();
+        shape = in.readByte();
+        direction = in.readShort();
+        centerRow = in.readInt();
+        centerCol = in.readInt();
+        heldShape = in.readByte();
+
+        if (type == SpectatorServer.KEYFRAME)
+        {
+            rows = in.readInt();
+            cols = in.readInt();
+            if (rows < 0 || cols < 0 || (long) rows * cols > Integer.MAX_VALUE)
+                throw new IOException("bad board size " + rows + " x " + cols);
+            if (cells.length != rows * cols)
+                cells = new byte[rows * cols];
+            in.readFully(cells);
+            synced = true;
+            keyframes++;
+        }
+        else if (type == SpectatorServer.DELTA)
+        {
+            if (!synced)
+                throw new IOException("delta before keyframe");
+            int count = in.readInt();
+            if (count < 0 || count > cells.length)
+                throw new IOException("bad delta count " + count);
+            for (int i = 0; i < count; i++)
+            {
+                int index = in.readInt();
+                if (index < 0 || index >= cells.length)
+                    throw new IOException("bad cell index " + index);
+                cells[index] = in.readByte();
+            }
+            deltas++;
+        }
+        else
+        {
+            throw new IOException("unknown frame type " + type);
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects from the server.
+     * @throws IOException  If the socket cannot be closed
+     */
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+
+    /**
+     * Returns the code of a cell of the copy of the board.
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @return      The code of the cell
+     */
+    public byte get(int row, int col)
+    {
+        return cells[row * cols + col];
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     * @return  The number of rows, or 0 before the first keyframe
+     */
+    public int getNumRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     * @return  The number of columns, or 0 before the first keyframe
+     */
+    public int getNumCols()
+    {
+        return cols;
+    }
+
+    /**
+     * Returns the tick of the last frame read.
+     * @return  The tick of the last frame
+     */
+    public int getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Returns the score in the last frame read.
+     * @return  The score
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * Returns the level in the last frame read.
+     * @return  The level
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Returns the number of lines cleared in the last frame read.
+     * @return  The number of lines cleared
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Returns the shape of the falling tetrad in the last frame read.
+     * @return  The shape of the falling tetrad (0 - 6)
+     */
+    public int getShape()
+    {
+        return shape;
+    }
+
+    /**
+     * Returns the direction of the falling tetrad in the last frame read.
+     * @return  The direction of the falling tetrad
+     */
+    public int getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * Returns the location of the center block of the falling tetrad in the last frame read.
+     * @return  The location of the center block
+     */
+    public Location getCenterLocation()
+    {
+        return new Location(centerRow, centerCol);
+    }
+
+    /**
+     * Returns the held shape in the last frame read.
+     * @return  The held shape, or -1 if nothing is held
+     */
+    public int getHeldShape()
+    {
+        return heldShape;
+    }
+
+    /**
+     * Returns a summary of what has been received.
+     * @return  The statistics of the client, as one line of text
+     */
+    public String getStats()
+    {
+        return String.format("%d keyframes, %d deltas, %d bytes (%.1f per frame)", keyframes,
+                deltas, bytes, keyframes + deltas == 0 ? 0.0
+                        : bytes / (double) (keyframes + deltas));
+    }
+}
@@ -0,0 +1,167 @@
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyListener;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import javax.swing.*;
+
+/**
+ * A SpectatorDisplay shows every board of a BoardCompositor in one window. A Swing timer repaints
+ * it 60 times a second; each paint lets the compositor redraw the boards that changed and then
+ * draws the composite image with a single blit, in device pixels like the BlockDisplay.
+ *
+ * A key listener can be given to the window, so the boards shown can also be played (see Match).
+ *
+ * Running it on its own plays a number of headless games with a random bot (64 by default, or
+ * the number given as the first argument) and shows them all at once.
+ *
+ * @author Pranav Sukesh
+ * @version 4/2/2023
+ */
+public class SpectatorDisplay extends JComponent
+{
+    private static final long serialVersionUID = 1L;
+    private static final int FPS = 60;
+    private static final int DROP_EVERY = 12;
+
+    private BoardCompositor compositor;
+    private JFrame frame;
+    private AffineTransform deviceTransform;
+    private KeyListener keys;
+
+    /**
+     * Plays a number of headless games with a random bot and shows them in one window.
+     * @param args  The number of games to play (64 if not given)
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        Tetris[] games = new Tetris[n];
+        boolean[] over = new boolean[n];
+        BoardCompositor compositor = new BoardCompositor();
+        for (int i = 0; i < n; i++)
+        {
+            games[i] = new Tetris(new BoardConfig(), true);
+            compositor.add(games[i]);
+        }
+        new SpectatorDisplay(compositor, "Tetris - " + n + " games");
+
+        Random rand = new Random();
+        for (int frame = 0; ; frame++)
+        {
+            Thread.sleep(1000 / FPS);
+            for (int i = 0; i < n; i++)
+            {
+                if (over[i])
+                    continue;
+                int action = rand.nextInt(8);
+                if (action == 0)
+                    games[i].moveLeft();
+                else if (action == 1)
+                    games[i].moveRight();
+                else if (action == 2)
+                    games[i].rotateCW();
+                if ((frame + i) % DROP_EVERY == 0)
+                    games[i].hardDrop();
+                over[i] = games[i].step();
+            }
+        }
+    }
+
+    /**
+     * Constructs a window showing the boards of the given compositor.
+     * @param compositor    The compositor of the boards to show
+     * @param title         The title of the window
+     */
+    public SpectatorDisplay(BoardCompositor compositor, String title)
+    {
+        this(compositor, title, null);
+    }
+
+    /**
+     * Constructs a window showing the boards of the given compositor that passes the keys
+     * pressed in it to the given listener.
+     * @param compositor    The compositor of the boards to show
+     * @param title         The title of the window
+     * @param keys          The listener of the keys pressed in the window (may be null)
+     */
+    public SpectatorDisplay(BoardCompositor compositor, String title, KeyListener keys)
+    {
+        this.compositor = compositor;
+        this.keys = keys;
+        deviceTransform = new AffineTransform();
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                createAndShowGUI(title);
+            }
+        });
+    }
+
+    /**
+     * Creates the window and starts the repaint timer. This method should be invoked from the
+     * event-dispatching thread.
+     * @param title The title of the window
+     */
+    private void createAndShowGUI(String title)
+    {
+        frame = new JFrame(title);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getMaximumWindowBounds();
+        setPreferredSize(new Dimension(screen.width * 85 / 100, screen.height * 85 / 100));
+        frame.getContentPane().add(this);
+        if (keys != null)
+            frame.addKeyListener(keys);
+        frame.pack();
+        frame.setVisible(true);
+
+        new Timer(1000 / FPS, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                repaint();
+            }
+        }).start();
+    }
+
+    /**
+     * Sets the title of the window, once it has been created.
+     * @param title The new title of the window
+     */
+    public void setTitle(String title)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                if (frame != null)
+                    frame.setTitle(title);
+            }
+        });
+    }
+
+    public void paintComponent(Graphics g)
+    {
+        Graphics2D g2 = (Graphics2D) g;
+        AffineTransform tx = g2.getTransform();
+        int w = (int) Math.round(getWidth() * tx.getScaleX());
+        int h = (int) Math.round(getHeight() * tx.getScaleY());
+
+        compositor.layout(w, h, g2.getDeviceConfiguration());
+        BufferedImage image = compositor.render();
+        if (image == null)
+            return;
+
+        deviceTransform.setToTranslation(Math.round(tx.getTranslateX()),
+                Math.round(tx.getTranslateY()));
+        g2.setTransform(deviceTransform);
+        g2.drawImage(image, 0, 0, null);
+        g2.setTransform(tx);
+    }
+}
@@ -0,0 +1,624 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A SpectatorServer streams a game of Tetris to any number of spectators over TCP. After every
+ * step the game thread calls publish, which compares the board with the board it last
+ * published and encodes only what changed: the cells that changed, the falling tetrad and the
+ * score. The encoded frame is shared by every spectator, so a frame costs the same to make no
+ * matter how many are watching, and a step that changes nothing sends nothing.
+ *
+ * Frames are sent by a single thread that runs a non-blocking selector over all the spectator
+ * sockets. Each spectator has its own queue of frames waiting to be written. A spectator that
+ * falls too far behind has its queue thrown away instead of holding up the others or growing
+ * without bound, and is sent a keyframe (the whole board) once it has caught up. New spectators
+ * start with a keyframe, and every spectator is sent one every KEYFRAME_INTERVAL frames.
+ *
+ * Every frame is an int length followed by that many bytes: the type (KEYFRAME or DELTA), the
+ * tick, the score, the level, the lines cleared, the shape, direction and center of the falling
+ * tetrad and the held shape. A keyframe then has the number of rows and columns and every cell;
+ * a delta has the number of changed cells and the index and new code of each. The center, the
+ * size of the board, the count and the indices are all ints, so any board the game can play
+ * can be streamed. SpectatorClient reads them.
+ *
+ * Usage: java SpectatorServer [port] [seconds]
+ *    or: java SpectatorServer --loopback seconds [width height]
+ * Plays a game with a random bot for the given number of seconds (forever if not given) and
+ * streams it on the given port (7777 if not given). With --loopback, streams a game on a board
+ * of the given size (64 x 600 if not given) to a SpectatorClient over the loopback interface
+ * and checks that the client ends with the same board.
+ *
+ * @author Pranav Sukesh
+ * @version 4/7/2023
+ */
+public class SpectatorServer
+{
+    public static final byte KEYFRAME = 1;
+    public static final byte DELTA = 2;
+    public static final int HEADER_SIZE = 27;
+    public static final int KEYFRAME_INTERVAL = 600;
+
+    private static final int FPS = 60;
+    private static final int DROP_EVERY = 30;
+    private static final int MAX_QUEUED_BYTES = 4 * 1024;
+    private static final int SEND_BUFFER = 8 * 1024;
+
+    private Tetris game;
+    private byte[] published;
+    private int rows, cols;
+    private int tick;
+    private int[] changed;
+
+    private ServerSocketChannel server;
+    private Selector selector;
+    private Thread sender;
+    private volatile boolean running;
+    private ConcurrentLinkedQueue<Frame> frames;
+    private AtomicBoolean keyframeWanted;
+    private ArrayList<Client> clients;
+    private volatile int clientCount;
+    private volatile long bytesSent, framesPublished, deltas, deltaBytes, resyncs;
+
+    /**
+     * Plays a game with a random bot and streams it, or streams one to a client over the
+     * loopback interface.
+     * @param args  The port to listen on and the number of seconds to play, or --loopback, a
+     *              number of seconds and optionally the width and height of the board
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length >= 2 && args[0].equals("--loopback"))
+        {
+            int width = args.length > 3 ? Integer.parseInt(args[2]) : 64;
+            int height = args.length > 3 ? Integer.parseInt(args[3]) : 600;
+            loopback(Integer.parseInt(args[1]) * FPS, new BoardConfig(width, height));
+            return;
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) * FPS : Integer.MAX_VALUE;
+        SpectatorServer server = new SpectatorServer(new Tetris(new BoardConfig(), true), port);
+        server.start();
+        System.out.println("streaming on port " + server.getPort());
+        server.play(frames);
+        System.out.println(server.getStats());
+        server.stop();
+    }
+
+    /**
+     * Streams a game on a board of the given size to a SpectatorClient over the loopback
+     * interface and checks that the client's copy of the board matches the last one published.
+     * @param frames    The number of frames to play
+     * @param config    The geometry of the board
+     */
+    private static void loopback(int frames, BoardConfig config) throws Exception
+    {
+        SpectatorServer server = new SpectatorServer(new Tetris(config, true), 0);
+        server.start();
+        SpectatorClient client = new SpectatorClient("localhost", server.getPort());
+        Thread watcher = new Thread(() -> {
+            try
+            {
+                while (client.readFrame())
+                {
+                    //keep watching
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("client stopped: " + e);
+            }
+        }, "SpectatorClient");
+        watcher.start();
+
+        server.play(frames);
+        //give the sender time to write what is still queued before the sockets are closed
+        Thread.sleep(1000);
+        System.out.println("server: " + server.getStats());
+        server.stop();
+        watcher.join();
+        client.close();
+        System.out.println("client: " + client.getStats());
+
+        boolean same = client.getNumRows() == server.rows && client.getNumCols() == server.cols;
+        int last = -1;
+        for (int r = 0; same && r < server.rows; r++)
+        {
+            for (int c = 0; same && c < server.cols; c++)
+            {
+                same = client.get(r, c) == server.published[r * server.cols + c];
+                if (client.get(r, c) != Board.EMPTY)
+                    last = r * server.cols + c;
+            }
+        }
+        System.out.println(server.rows + " x " + server.cols + ", last filled cell " + last + ": "
+                + (same ? "in sync" : "DESYNC"));
+    }
+
+    /**
+     * Constructs a server streaming the given game on the given port. It does not accept
+     * spectators until it is started.
+     * @param game  The game to stream
+     * @param port  The port to listen on (0 for any free port)
+     * @throws IOException  If the port cannot be opened
+     */
+    public SpectatorServer(Tetris game, int port) throws IOException
+    {
+        setGame(game);
+        frames = new ConcurrentLinkedQueue<Frame>();
+        keyframeWanted = new AtomicBoolean();
+        clients = new ArrayList<Client>();
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Sets the game to stream. Every spectator is sent a keyframe of the new game with the next
+     * frame published.
+     * @param newGame   The game to stream
+     */
+    public void setGame(Tetris newGame)
+    {
+        game = newGame;
+        Board board = game.getBoard();
+        rows = board.getNumRows();
+        cols = board.getNumCols();
+        published = new byte[rows * cols];
+        changed = new int[rows * cols];
+        tick = -1;
+    }
+
+    /**
+     * Plays the game with a random bot at FPS frames a second, publishing after every step and
+     * starting a new game on a board of the same size whenever one ends.
+     * @param frames    The number of frames to play
+     * @throws InterruptedException If interrupted between frames
+     */
+    private void play(int frames) throws InterruptedException
+    {
+        Random rand = new Random();
+        for (int frame = 0; frame < frames; frame++)
+        {
+            Thread.sleep(1000 / FPS);
+            int action = rand.nextInt(8);
+            if (action < 4)
+                Replay.apply(game, action == 3 ? Replay.ROTATE_CW : action);
+            if (frame % DROP_EVERY == 0)
+                game.hardDrop();
+            if (game.step())
+                setGame(new Tetris(game.getConfig(), true));
+            publish();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return  The local port
+     * @throws IOException  If the port cannot be read
+     */
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Starts the thread that accepts spectators and sends them frames.
+     */
+    public void start()
+    {
+        running = true;
+        sender = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                serve();
+            }
+        }, "SpectatorServer");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Stops the server and disconnects every spectator.
+     * @throws InterruptedException If interrupted while waiting for the server to stop
+     */
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        selector.wakeup();
+        sender.join();
+    }
+
+    /**
+     * Publishes the current state of the game. This should be called by the thread that steps
+     * the game, after each step. A keyframe is only encoded when a spectator needs one.
+     */
+    public void publish()
+    {
+        boolean first = tick < 0;
+        tick++;
+        boolean keyframe = first || tick % KEYFRAME_INTERVAL == 0
+                || keyframeWanted.getAndSet(false);
+
+        Board board = game.getBoard();
+        int count = 0;
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < cols; c++)
+            {
+                int i = r * cols + c;
+                byte code = board.get(r, c);
+                if (published[i] != code)
+                {
+                    published[i] = code;
+                    changed[count++] = i;
+                }
+            }
+        }
+
+        byte[] delta = null;
+        if (!first && count > 0)
+        {
+            ByteBuffer buf = ByteBuffer.allocate(4 + HEADER_SIZE + 4 + count * 5);
+            putHeader(buf, DELTA);
+            buf.putInt(count);
+            for (int j = 0; j < count; j++)
+            {
+                buf.putInt(changed[j]);
+                buf.put(published[changed[j]]);
+            }
+            delta = finish(buf);
+        }
+
+        byte[] full = null;
+        if (keyframe)
+        {
+            ByteBuffer buf = ByteBuffer.allocate(4 + HEADER_SIZE + 8 + published.length);
+            putHeader(buf, KEYFRAME);
+            buf.putInt(rows);
+            buf.putInt(cols);
+            buf.put(published);
+            full = finish(buf);
+        }
+
+        framesPublished++;
+        if (delta != null)
+        {
+            deltas++;
+            deltaBytes += delta.length;
+        }
+        if (delta != null || full != null)
+            frames.add(new Frame(delta, full, tick % KEYFRAME_INTERVAL == 0 || first));
+        selector.wakeup();
+    }
+
+    /**
+     * Writes the length placeholder and the header of a frame.
+     * @param buf   The buffer of the frame
+     * @param type  KEYFRAME or DELTA
+     */
+    private void putHeader(ByteBuffer buf, byte type)
+    {
+        Tetrad tetrad = game.getFallingTetrad();
+        Location center = tetrad.getCenterLocation();
+        buf.putInt(0);
+        buf.put(type);
+        buf.putInt(tick);
+        buf.putInt(game.getScore());
+        buf.putShort((short) game.getLevel());
+        buf.putInt(game.getLines());
+        buf.put((byte) tetrad.getShape());
+        buf.putShort((short) tetrad.getDirection());
+        buf.putInt(center.getRow());
+        buf.putInt(center.getCol());
+        buf.put((byte) game.getHeldShape());
+    }
+
+    /**
+     * Fills in the length of a frame and returns its bytes.
+     * @param buf   The buffer of the frame
+     * @return      The bytes of the frame
+     */
+    private byte[] finish(ByteBuffer buf)
+    {
+        buf.putInt(0, buf.position() - 4);
+        return buf.array();
+    }
+
+    /**
+     * Returns the number of spectators connected.
+     * @return  The number of spectators
+     */
+    public int getClientCount()
+    {
+        return clientCount;
+    }
+
+    /**
+     * Returns a summary of the frames published and the bytes sent.
+     * @return  The statistics of the server, as one line of text
+     */
+    public String getStats()
+    {
+        return String.format("%d frames published, %d deltas of %.1f bytes avg (keyframe %d "
+                        + "bytes), %d spectators, %d bytes sent, %d resyncs", framesPublished,
+                deltas, deltas == 0 ? 0.0 : deltaBytes / (double) deltas,
+                4 + HEADER_SIZE + 8 + rows * cols, clientCount, bytesSent, resyncs);
+    }
+
+    /**
+     * Runs the selector loop: accepts spectators, queues published frames for each of them and
+     * writes as much of each queue as its socket takes, until the server is stopped.
+     */
+    private void serve()
+    {
+        try
+        {
+            while (running)
+            {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else
+                    {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable())
+                            client.read();
+                        if (key.isValid() && key.isWritable())
+                            client.write();
+                    }
+                }
+
+                Frame frame;
+                while ((frame = frames.poll()) != null)
+                {
+                    for (int i = 0; i < clients.size(); i++)
+                        clients.get(i).offer(frame);
+                }
+                for (int i = clients.size() - 1; i >= 0; i--)
+                {
+                    Client client = clients.get(i);
+                    if (client.closed)
+                        clients.remove(i);
+                    else
+                        client.write();
+                }
+                clientCount = clients.size();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("spectator server stopped: " + e);
+        }
+        finally
+        {
+            for (Client client : clients)
+                client.close();
+            clientCount = 0;
+            try
+            {
+                selector.close();
+                server.close();
+            }
+            catch (IOException e)
+            {
+                //already closing
+            }
+        }
+    }
+
+    /**
+     * Accepts a waiting spectator and asks for a keyframe for it.
+     * @throws IOException  If the server socket fails
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        //keep the kernel buffer small, so a spectator that stops reading is noticed by its
+        //queue filling up within seconds rather than after minutes of buffered frames
+        channel.socket().setSendBufferSize(SEND_BUFFER);
+        Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        keyframeWanted.set(true);
+    }
+
+    /**
+     * A Frame is one published state of the game: a delta from the state before it, and a
+     * keyframe if one was asked for.
+     */
+    private static class Frame
+    {
+        private byte[] delta;
+        private byte[] keyframe;
+        private boolean resync;
+
+        /**
+         * Constructs a frame.
+         * @param delta     The delta from the last frame (null if nothing changed)
+         * @param keyframe  The whole state (null if no keyframe was asked for)
+         * @param resync    True if every spectator should be sent the keyframe
+         */
+        public Frame(byte[] delta, byte[] keyframe, boolean resync)
+        {
+            this.delta = delta;
+            this.keyframe = keyframe;
+            this.resync = resync;
+        }
+    }
+
+    /**
+     * A Client is a connected spectator with its own queue of frames waiting to be written.
+     */
+    private class Client
+    {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ArrayDeque<ByteBuffer> queue;
+        private ByteBuffer[] gather;
+        private int queuedBytes;
+        private boolean needsKeyframe;
+        private boolean closed;
+        private ByteBuffer discard;
+
+        /**
+         * Constructs a spectator that needs a keyframe before anything else.
+         * @param channel   The socket of the spectator
+         */
+        public Client(SocketChannel channel)
+        {
+            this.channel = channel;
+            queue = new ArrayDeque<ByteBuffer>();
+            gather = new ByteBuffer[16];
+            needsKeyframe = true;
+            discard = ByteBuffer.allocate(256);
+        }
+
+        /**
+         * Queues a published frame: the keyframe if this spectator needs one (or every
+         * spectator is being resynced), otherwise the delta. A spectator that needs a keyframe
+         * gets nothing until one is published. If the queue is already too long, it is thrown
+         * away and the spectator waits for a keyframe.
+         * @param frame The published frame
+         */
+        public void offer(Frame frame)
+        {
+            byte[] bytes;
+            if ((needsKeyframe || frame.resync) && frame.keyframe != null)
+            {
+                dropQueue();
+                bytes = frame.keyframe;
+                needsKeyframe = false;
+            }
+            else if (needsKeyframe || frame.delta == null)
+            {
+                return;
+            }
+            else if (queuedBytes + frame.delta.length > MAX_QUEUED_BYTES)
+            {
+                dropQueue();
+                needsKeyframe = true;
+                resyncs++;
+                keyframeWanted.set(true);
+                return;
+            }
+            else
+            {
+                bytes = frame.delta;
+            }
+            queue.add(ByteBuffer.wrap(bytes));
+            queuedBytes += bytes.length;
+        }
+
+        /**
+         * Throws away the queued frames, except one that is partly written already, so the
+         * stream stays whole.
+         */
+        private void dropQueue()
+        {
+            ByteBuffer head = queue.peek();
+            queue.clear();
+            queuedBytes = 0;
+            if (head != null && head.position() > 0)
+            {
+                queue.add(head);
+                queuedBytes = head.remaining();
+            }
+        }
+
+        /**
+         * Writes as much of the queue as the socket takes in one gathering write, and only
+         * asks the selector to watch for the socket being writable while frames are left.
+         */
+        public void write()
+        {
+            if (closed)
+                return;
+            try
+            {
+                while (!queue.isEmpty())
+                {
+                    int n = 0;
+                    for (ByteBuffer buf : queue)
+                    {
+                        if (n == gather.length)
+                            break;
+                        gather[n++] = buf;
+                    }
+                    long written = channel.write(gather, 0, n);
+                    bytesSent += written;
+                    queuedBytes -= written;
+                    while (!queue.isEmpty() && !queue.peek().hasRemaining())
+                        queue.poll();
+                    if (gather[n - 1].hasRemaining())
+                        break;
+                }
+                key.interestOps(queue.isEmpty() ? SelectionKey.OP_READ
+                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            catch (IOException e)
+            {
+                close();
+            }
+        }
+
+        /**
+         * Reads and ignores anything the spectator sends, to notice when it disconnects.
+         */
+        public void read()
+        {
+            try
+            {
+                discard.clear();
+                if (channel.read(discard) < 0)
+                    close();
+            }
+            catch (IOException e)
+            {
+                close();
+            }
+        }
+
+        /**
+         * Disconnects the spectator.
+         */
+        public void close()
+        {
+            closed = true;
+            if (key != null)
+                key.cancel();
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                //already closed
+            }
+        }
+    }
+}
@@ -9,7 +9,8 @@ import java.util.concurrent.Semaphore;
 /**
  * A tetrad is a set of four blocks that act as the game pieces in Tetris. Each tetrad has a
  * specific shape and color. It can be shifted in any direction, rotated, dropped down as far as
- * possible, and be held. It also has a shadow that shows where the tetrad will land.
+ * possible, and be held. It also has a shadow that shows where the tetrad will land. The blocks
+ * of a tetrad are stored on the Board as the cell code of its shape.
  *
  * @author Pranav Sukesh
  * @version 3/13/2023
@@ -18,14 +19,32 @@ public class Tetrad
 {
     public static final Color SHADOW = new Color(120, 120, 120, 120);
     public static final Color TRAIL = new Color(255, 255, 255, 120);
-    private Block[] blocks;
-    private MyBoundedGrid<Block> grid;
-    private Color color;
+
+    private static final int FLASH_TICKS = 2;
+    private static final int TRAIL_TICKS = 8;
+
+    /* I, T, O, Z, L, R, J as {row, column} offsets from the center block, facing north */
+    private static final int[][][] SHAPES = {
+            {{0, 0}, {0, -1}, {0, 1}, {0, 2}},
+            {{0, 0}, {0, -1}, {0, 1}, {-1, 0}},
+            {{0, 0}, {0, 1}, {-1, 0}, {-1, 1}},
+            {{0, 0}, {-1, -1}, {0, 1}, {-1, 0}},
+            {{0, 0}, {0, -1}, {0, 1}, {-1, -1}},
+            {{0, 0}, {0, -1}, {-1, 0}, {-1, 1}},
+            {{0, 0}, {0, -1}, {0, 1}, {-1, 1}}
+    };
+
+    /* {row, column} shifts tried in order when a rotation is blocked */
+    private static final int[][] KICKS = {{0, -1}, {0, 1}, {0, -2}, {0, 2}, {2, -1}, {2, 1},
+            {1, -1}, {1, -1}};
+
+    private Location[] locs;
+    private Board grid;
+    private int shape;
+    private byte code;
     private Semaphore lock;
     private int direction;
 
-    private Block[] shadowBlocks;
-    private ArrayList<Block> trailBlocks;
     private Tetris game;
 
 
@@ -33,72 +52,87 @@ public class Tetrad
      * Constructs a new tetrad with the given blocks in the given grid. It is made in one of the
      * seven regular tetrad shapes, given by the user with each shape being a different color. It
      * appears in the top row of the grid, centered horizontally.
-     * @param grid      The grid in which this tetrad is located
+     * @param grid      The board in which this tetrad is located
+     * @param center    The location of the center block of this tetrad
+     * @param randShape The shape of this tetrad (0 - 6)
+     * @param t         The game this tetrad belongs to
      */
-    public Tetrad(MyBoundedGrid<Block> grid, Location center, int randShape, Tetris t)
+    public Tetrad(Board grid, Location center, int randShape, Tetris t)
     {
-        lock = new Semaphore(1, true);
+        //not fair: only the key thread and the game loop ever race for it, and an unfair lock
+        //is cheaper to take when no one else holds it
+        lock = new Semaphore(1);
         game = t;
         direction = 0;
-        blocks = new Block[4];
-        trailBlocks = new ArrayList<Block>();
-        for (int i = 0; i < 4; i++)
-        {
-            blocks[i] = new Block();
-        }
+        locs = new Location[4];
         this.grid = grid;
-        Color[] colors = {Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.RED,  Color.BLUE,
-                Color.GREEN, Color.ORANGE};
-
-        color = new Color(colors[randShape].getRed(), colors[randShape].getGreen(),
-                colors[randShape].getBlue(), 180);
-
-        for (int i = 0; i < blocks.length; i++)
-        {
-
-            blocks[i].setColor(color);
-        }
-
-
-        /* I, T, O, Z, L, R, J */
-        Location[][] shapes = {
-                {new Location(center.getRow(), center.getCol()),
-                        new Location(center.getRow(), center.getCol() - 1),
-                        new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow(), center.getCol() + 2)},
-                {center, new Location(center.getRow(), center.getCol() - 1),
-                        new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow() - 1, center.getCol())},
-                {center, new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow() - 1, center.getCol()),
-                        new Location(center.getRow() - 1, center.getCol() + 1)},
-                {center, new Location(center.getRow() - 1, center.getCol() - 1),
-                        new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow() - 1, center.getCol())},
-                {center, new Location(center.getRow(), center.getCol() - 1),
-                        new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow() - 1, center.getCol() - 1)},
-                {center, new Location(center.getRow(), center.getCol() - 1),
-                        new Location(center.getRow() - 1, center.getCol()),
-                        new Location(center.getRow() - 1, center.getCol() + 1)},
-                {center, new Location(center.getRow(), center.getCol() - 1),
-                        new Location(center.getRow(), center.getCol() + 1),
-                        new Location(center.getRow() - 1, center.getCol() + 1)}
-        };
-
-        Location[] loc = shapes[randShape];
-
-        shadowBlocks = new Block[4];
+        shape = randShape;
+        code = Board.pieceCode(randShape);
+
+        Location[] loc = new Location[4];
         for (int i = 0; i < 4; i++)
         {
-            shadowBlocks[i] = new Block();
-            shadowBlocks[i].setColor(SHADOW);
+            loc[i] = new Location(center.getRow() + SHAPES[randShape][i][0],
+                    center.getCol() + SHAPES[randShape][i][1]);
         }
 
         addToLocations(grid, loc);
     }
 
 
+    /**
+     * The method returns the row offset of a block of the given shape from its center block,
+     * when the shape faces north.
+     * @param shape The shape (0 - 6)
+     * @param i     The block of the shape (0 - 3, 0 is the center)
+     * @return      The row offset of the block
+     */
+    public static int getRowOffset(int shape, int i)
+    {
+        return SHAPES[shape][i][0];
+    }
+
+    /**
+     * The method returns the column offset of a block of the given shape from its center block,
+     * when the shape faces north.
+     * @param shape The shape (0 - 6)
+     * @param i     The block of the shape (0 - 3, 0 is the center)
+     * @return      The column offset of the block
+     */
+    public static int getColOffset(int shape, int i)
+    {
+        return SHAPES[shape][i][1];
+    }
+
+    /**
+     * The method returns the number of wall kicks tried when a rotation is blocked.
+     * @return  The number of wall kicks
+     */
+    public static int getKickCount()
+    {
+        return KICKS.length;
+    }
+
+    /**
+     * The method returns the row shift of a wall kick.
+     * @param i The wall kick, in the order they are tried
+     * @return  The row shift of the wall kick
+     */
+    public static int getKickRow(int i)
+    {
+        return KICKS[i][0];
+    }
+
+    /**
+     * The method returns the column shift of a wall kick.
+     * @param i The wall kick, in the order they are tried
+     * @return  The column shift of the wall kick
+     */
+    public static int getKickCol(int i)
+    {
+        return KICKS[i][1];
+    }
+
     /**
      * The method returns the direction of this tetrad.
      * @return  The direction of this tetrad
@@ -108,56 +142,76 @@ public class Tetrad
         return direction;
     }
 
+    /**
+     * The method returns the shape of this tetrad.
+     * @return  The shape of this tetrad (0 - 6)
+     */
+    public int getShape()
+    {
+        return shape;
+    }
+
     /**
      * The method returns the locations of the blocks of this tetrad.
      * @return  The locations of the blocks of this tetrad
      */
     public Location[] getLocations()
     {
-        Location[] locs = new Location[blocks.length];
-        for (int i = 0; i < blocks.length; i++)
-        {
-            locs[i] = blocks[i].getLocation();
-        }
-        return locs;
+        return locs.clone();
+    }
+
+    /**
+     * The method puts this tetrad back in a saved position, as the given shape facing the given
+     * direction. Only the tetrad changes: the board is restored on its own, with the blocks of
+     * this tetrad already in it.
+     * @param newShape      The shape of the tetrad (0 - 6)
+     * @param newDirection  The direction of the tetrad
+     * @param newLocs       The locations of the blocks of the tetrad
+     */
+    public void restore(int newShape, int newDirection, Location[] newLocs)
+    {
+        shape = newShape;
+        code = Board.pieceCode(newShape);
+        direction = newDirection;
+        System.arraycopy(newLocs, 0, locs, 0, locs.length);
     }
 
     public Location getCenterLocation()
     {
-        return blocks[0].getLocation();
+        return locs[0];
     }
 
     /**
      * The method adds the blocks of this tetrad to the grid at the given locations. It does this
-     * by putting each block in the grid at the corresponding location in the array.
+     * by storing the code of this tetrad in each cell of the board.
      *
-     * @precondition    blocks are not in any grid, and locs.length == blocks.length
+     * @precondition    blocks are not in any grid, and newLocs.length == 4
      * @postcondition   blocks are in the grid at the given locations
-     * @param gr        The grid in which this tetrad is located
-     * @param locs      The locations of the blocks of this tetrad
+     * @param gr        The board in which this tetrad is located
+     * @param newLocs   The locations of the blocks of this tetrad
      */
-    private void addToLocations(MyBoundedGrid<Block> gr, Location[] locs)
+    private void addToLocations(Board gr, Location[] newLocs)
     {
-        for (int i = 0; i < locs.length; i++)
+        for (int i = 0; i < newLocs.length; i++)
         {
-            blocks[i].putSelfInGrid(gr, locs[i]);
+            gr.set(newLocs[i], code);
+            locs[i] = newLocs[i];
         }
     }
 
     /**
      * The method removes the blocks of this tetrad from the grid and returns the locations of
-     * the blocks. It does this by removing each block from the grid and storing the location
+     * the blocks. It does this by emptying the cell of each block and storing the location
      * of each block in an array.
      *
      * @return  The locations of the blocks of this tetrad
      */
     private Location[] removeBlocks()
     {
-        Location[] oldLocs = new Location[blocks.length];
-        for (int i = 0; i < blocks.length; i++)
+        Location[] oldLocs = locs.clone();
+        for (int i = 0; i < oldLocs.length; i++)
         {
-            oldLocs[i] = blocks[i].getLocation();
-            blocks[i].removeSelfFromGrid();
+            grid.set(oldLocs[i], Board.EMPTY);
         }
         return oldLocs;
 
@@ -168,16 +222,16 @@ public class Tetrad
      * does this by checking if each location is valid and if the grid contains a block at that
      * location.
      *
-     * @param gr    The grid in which this tetrad is located
-     * @param locs  The locations to check
-     * @return      True if each of the locations is valid and empty in the grid, false otherwise
+     * @param gr        The board in which this tetrad is located
+     * @param checkLocs The locations to check
+     * @return          True if each of the locations is valid and empty in the grid, false
+     *                  otherwise
      */
-    private boolean areEmpty(MyBoundedGrid<Block> gr, Location[] locs)
+    private boolean areEmpty(Board gr, Location[] checkLocs)
     {
-        for (Location l: locs)
+        for (Location l: checkLocs)
         {
-            if (!gr.isValid(l) || !(gr.get(l) == null || gr.get(l).getColor().equals(SHADOW) ||
-                    gr.get(l).getColor().equals(TRAIL)))
+            if (!gr.isEmpty(l))
             {
                 return false;
             }
@@ -207,6 +261,8 @@ public class Tetrad
             if (areEmpty(grid, newLocs))
             {
                 addToLocations(grid ,newLocs);
+                if (!game.isQuiet())
+                    Metrics.MOVES.increment();
                 return true;
             }
             else
@@ -243,8 +299,6 @@ public class Tetrad
         try
         {
             lock.acquire();
-            Color lightYellow = new Color(Color.YELLOW.getRed(), Color.YELLOW.getGreen(),
-                    Color.YELLOW.getBlue(), 180);
             Location[] oldLocs = removeBlocks();
             Location[] newLocs = new Location[oldLocs.length];
             Location center = oldLocs[0];
@@ -255,29 +309,24 @@ public class Tetrad
                         center.getRow() + center.getCol() - oldLocs[i].getRow());
             }
 
-            if (areEmpty(grid, newLocs) && !color.equals(lightYellow))
+            if (areEmpty(grid, newLocs) && shape != 2)
             {
                 addToLocations(grid, newLocs);
                 direction = (direction + 90) % 360;
+                if (!game.isQuiet())
+                    Metrics.ROTATIONS.increment();
                 return true;
             }
 
-            int[][] shifts = {{0, -1},
-                    {0, 1},
-                    {0, -2},
-                    {0, 2},
-                    {2, -1},
-                    {2, 1},
-                    {1, -1},
-                    {1, -1}};
-
-            for (int i = 0; i < shifts.length; i++)
+            for (int i = 0; i < KICKS.length; i++)
             {
-                Location[] shiftedLocs = shiftLocs(newLocs,shifts[i][0], shifts[i][1]);
-                if (areEmpty(grid, shiftedLocs) && !color.equals(lightYellow))
+                Location[] shiftedLocs = shiftLocs(newLocs, KICKS[i][0], KICKS[i][1]);
+                if (areEmpty(grid, shiftedLocs) && shape != 2)
                 {
                     addToLocations(grid, shiftedLocs);
                     direction = (direction + 90) % 360;
+                    if (!game.isQuiet())
+                        Metrics.ROTATIONS.increment();
                     return true;
                 }
             }
@@ -317,65 +366,120 @@ public class Tetrad
         return shiftedLocs;
     }
 
+    /**
+     * The method returns true if the given cell is inside the grid and either empty or one of
+     * the blocks of this tetrad.
+     *
+     * @param row   The row of the cell
+     * @param col   The column of the cell
+     * @return      True if this tetrad could move into the cell, false otherwise
+     */
+    private boolean isFree(int row, int col)
+    {
+        if (grid.isEmpty(row, col))
+        {
+            return true;
+        }
+        if (!grid.isValid(row, col))
+        {
+            return false;
+        }
+        for (Location l: locs)
+        {
+            if (l.getRow() == row && l.getCol() == col)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The method returns the number of rows the blocks at the given locations can fall before
+     * they land on the stack or the floor. The cells of this tetrad count as empty, so it does
+     * not need to be taken out of the grid first. Each block only looks down its own column, so
+     * this is one scan per block rather than a collision check for every row.
+     *
+     * @param checkLocs The locations of the blocks
+     * @return          The number of empty rows below the blocks
+     */
+    private int distanceToBottom(Location[] checkLocs)
+    {
+        int minRows = Integer.MAX_VALUE;
+        for (Location l: checkLocs)
+        {
+            int dist = 0;
+            while (isFree(l.getRow() + dist + 1, l.getCol()))
+            {
+                dist++;
+            }
+            minRows = Math.min(minRows, dist);
+        }
+        return minRows;
+    }
+
+    /**
+     * The method returns the number of rows this tetrad can fall before it lands, worked out
+     * once for every block instead of trying to move down one row at a time.
+     *
+     * @return  The number of rows this tetrad can fall (0 if it is resting on the stack)
+     */
+    public int dropDistance()
+    {
+        try
+        {
+            lock.acquire();
+            return distanceToBottom(locs);
+        }
+        catch (InterruptedException e)
+        {
+            //did not modify the tetrad
+            return 0;
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
     /**
      * The method moves the tetrad to the bottom of the grid. It does this by determining the
      * distance between the tetrad and its lowest possible position, then moving the tetrad there
      * It also plays a visual and sound effect.
      *
+     * @param overlay   The overlay that shows the trail of the drop
      * @return  The number of rows the tetrad moves down
      */
-    public int moveToBottom(BlockDisplay display)
+    public int moveToBottom(Overlay overlay)
     {
 
         try
         {
             lock.acquire();
-            MyBoundedGrid<Block> gr = blocks[0].getGrid();
+            Board gr = grid;
             Location[] origLocs = removeBlocks();
-            Location[] locs = new Location[origLocs.length];
+            int distance = distanceToBottom(origLocs);
+            Location[] dropLocs = shiftLocs(origLocs, distance, 0);
+            if (!game.isQuiet())
+                GameEvents.hardDrop(shape, distance);
 
-            for (int i = 0; i < origLocs.length; i++)
-            {
-                locs[i] = new Location(origLocs[i].getRow(), origLocs[i].getCol());
-            }
 
-
-            int minRows = Integer.MAX_VALUE;
-            for (int i = 0; i < 4; i++) {
-                int dist = 0;
-                Location temp = new Location(locs[i].getRow() + dist, locs[i].getCol());
-                while (gr.isValid(temp) && areEmpty(gr, new Location[]{temp})) {
-                    dist++;
-                    temp = new Location(locs[i].getRow() + dist, locs[i].getCol());
-                }
-                if (dist < minRows) {
-                    minRows = dist;
-                }
-            }
-
-            for (int i = 0; i < 4; i++)
-            {
-                locs[i] =
-                        new Location(locs[i].getRow() + minRows - 1, locs[i].getCol());
-            }
-
-
-            int min = 10;
+            int min = Integer.MAX_VALUE;
             int max = 0;
             int row = 0;
-            for (int i = 0; i < locs.length; i++)
+            for (int i = 0; i < dropLocs.length; i++)
             {
-                Location l = locs[i];
+                Location l = dropLocs[i];
                 min = Math.min(l.getCol(), min);
                 max = Math.max(l.getCol(), max);
                 row = Math.max(l.getRow(), row);
             }
 
-            dropEffect(min, max-min+1, row, display);
+            addToLocations(gr, dropLocs);
 
-            addToLocations(gr, locs);
+            dropEffect(min, max-min+1, row, overlay);
 
-            return minRows - 1;
+            return distance;
 
         }
         catch (InterruptedException e)
@@ -401,24 +505,15 @@ public class Tetrad
         try
         {
             lock.acquire();
-            Location[] oldLocs = removeBlocks();
-            Location[] newLocs = new Location[oldLocs.length];
-            for (int i = 0; i < oldLocs.length; i++)
-            {
-                newLocs[i] = new Location(oldLocs[i].getRow() + deltaRow,
-                        oldLocs[i].getCol());
-            }
-
-            if (areEmpty(grid, newLocs))
+            Location[] newLocs = shiftLocs(locs, deltaRow, 0);
+            for (Location l: newLocs)
             {
-                addToLocations(grid, oldLocs);
-                return true;
-            }
-            else
-            {
-                addToLocations(grid, oldLocs);
-                return false;
+                if (!isFree(l.getRow(), l.getCol()))
+                {
+                    return false;
+                }
             }
+            return true;
         }
         catch (InterruptedException e)
         {
@@ -433,83 +528,21 @@ public class Tetrad
 
 
     /**
-     * The method removes the shadow of this tetrad from the grid if the blocks are stored in a
-     * grid. It returns the locations of the blocks that were removed.
-     *
-     * @return  The locations of the blocks that were removed
-     */
-    public Location[] removeShadows()
-    {
-        Location[] locs = new Location[4];
-        for (int i = 0; i < 4; i++)
-        {
-            locs[i] = shadowBlocks[i].getLocation();
-            shadowBlocks[i].removeSelfFromGrid();
-        }
-
-        return locs;
-
-    }
-
-    /**
-     * The method adds the shadow of this tetrad to the grid at the given locations.
-     *
-     * @param gr    The grid to add the shadow to
-     * @param locs  The locations to add the shadows at
-     */
-    public void addShadows(MyBoundedGrid<Block> gr, Location[] locs)
-    {
-        for (int i = 0; i < locs.length; i++)
-        {
-            shadowBlocks[i].putSelfInGrid(gr, locs[i]);
-        }
-    }
-
-
-    /**
-     * The method updates the shadow of this tetrad. It does this by removing the shadow from
-     * the grid, removing the blocks from the grid, calculating the new locations of the shadow,
-     * checking if the new locations are valid and empty, and if so, adding the shadow to the
-     * grid at the new locations, and finally adding the blocks back to the grid.
+     * The method updates the shadow of this tetrad. It does this by calculating the locations
+     * the tetrad would land at and handing them to the overlay. The blocks stay in the grid, so
+     * the board is not changed.
      *
+     * @param overlay   The overlay that shows the shadow
      * @return True if the shadow was updated, false otherwise
      */
-    public boolean updateShadow()
+    public boolean updateShadow(Overlay overlay)
     {
         try
         {
             lock.acquire();
-            MyBoundedGrid<Block> gr = blocks[0].getGrid();
-            removeShadows();
-            Location[] shadowLocs = removeBlocks();
-            Location[] origLocs = new Location[shadowLocs.length];
-            for (int i = 0; i < shadowLocs.length; i++)
-            {
-                origLocs[i] = new Location(shadowLocs[i].getRow(), shadowLocs[i].getCol());
-            }
-
-
-            int minRows = Integer.MAX_VALUE;
-            for (int i = 0; i < 4; i++) {
-                int dist = 0;
-                Location temp = new Location(origLocs[i].getRow() + dist, origLocs[i].getCol());
-                while (gr.isValid(temp) && areEmpty(gr, new Location[]{temp})) {
-                    dist++;
-                    temp = new Location(origLocs[i].getRow() + dist, origLocs[i].getCol());
-                }
-                if (dist < minRows) {
-                    minRows = dist;
-                }
-            }
+            Location[] shadowLocs = shiftLocs(locs, distanceToBottom(locs), 0);
 
-            for (int i = 0; i < 4; i++)
-            {
-                shadowLocs[i] =
-                        new Location(shadowLocs[i].getRow() + minRows - 1, shadowLocs[i].getCol());
-            }
-            addShadows(gr, shadowLocs);
-
-            addToLocations(gr, origLocs);
+            overlay.setShadow(shadowLocs);
 
             return true;
 
@@ -528,72 +561,52 @@ public class Tetrad
 
 
     /**
-     * The method moves this tetrad to the holding area and rotates it to face north. It also
-     * moves the other tetrad to the top of the Tetris grid and rotates it to face north.
-     * @param other The other tetrad
-     * @return      True if the swap was successful, false otherwise
+     * The method removes this tetrad from the grid, for when it is put in the hold slot.
      */
-    public boolean swapWithHeld(Tetrad other)
+    public void removeFromGrid()
     {
-        try {
-
-            while (other.getDirection() != Location.NORTH) {
-                other.rotate();
-            }
-
-
-            Location[] locs = getLocations();
-            Location center = getCenterLocation();
-
+        try
+        {
+            lock.acquire();
             removeBlocks();
-
-            while (getDirection() != Location.NORTH)
-            {
-                for (int i = 0; i < 4; i++)
-                {
-                    locs[i] = new Location(center.getRow() - center.getCol() + locs[i].getCol(),
-                            center.getRow() + center.getCol() - locs[i].getRow());
-                }
-                direction = (direction + 90) % 360;
-            }
-            locs = shiftLocs(locs, 16 - center.getRow(),13 - center.getCol());
-
-            other.translate(1 - other.getCenterLocation().getRow(),
-                    4 - other.getCenterLocation().getCol());
-
-            addToLocations(grid, locs);
-
-            removeShadows();
-
-            return true;
         }
-        catch (Exception e)
+        catch (InterruptedException e)
         {
-            return false;
+            //did not modify the tetrad
+        }
+        finally
+        {
+            lock.release();
         }
-
     }
 
     /**
      * The method plays an effect for the dropped tetrad. The columns with this tetrad light up
-     * temporarily, while the tetrad itself turns white temporarily.
-     * while the
+     * and fade out, while the tetrad itself turns white for a couple of frames and sprays
+     * particles out of its bottom. The effects are added to the overlay, which ends them as the
+     * game advances. Effects turned off by the overlay's quality controller are skipped.
      * @param min       The leftmost column with this tetrad in it.
      * @param size      The horizontal length of the tetrad
      * @param row       The row that the bottom of this tetrad is in
-     * @param display   The display to update
+     * @param overlay   The overlay that shows the trail
      */
-    private void dropEffect(int min, int size, int row, BlockDisplay display)
+    private void dropEffect(int min, int size, int row, Overlay overlay)
     {
 
         if (!game.getMute())
         {
             try {
+                GameEvents.SoundEvent sound = new GameEvents.SoundEvent();
+                sound.begin();
                 AudioInputStream boom = AudioSystem.getAudioInputStream
                         (new File("src/Audio/vine-boom.wav"));
                 Clip sfx1 = AudioSystem.getClip();
+                Metrics.AUDIO_CLIPS.increment();
                 sfx1.open(boom);
                 sfx1.start();
+                sound.file = "vine-boom.wav";
+                game.logEvent(EventLog.AUDIO, EventLog.DROP_SOUND, 0);
+                sound.commit();
             } catch (Exception e) {
                 //do nothing
             }
@@ -601,84 +614,15 @@ public class Tetrad
 
         if (game.getAnim())
         {
-            for (int i = min; i < min + size; i++) {
-                for (int j = 0; j < row; j++)
-                    if (grid.isValid(new Location(j, i)) && grid.get(new Location(j, i)) == null) {
-                        Block b = new Block();
-                        b.setColor(TRAIL);
-                        b.putSelfInGrid(grid, new Location(j, i));
-                    }
-            }
-
-            for (int i = 0; i < 4; i++) {
-                Block b = blocks[i];
-                b.setColor(Color.WHITE);
-            }
-            display.showBlocks();
-            DropThread t = new DropThread();
-            t.start();
-        }
-
-    }
-
-    /**
-     * The method waits for 33 milliseconds (1 frame) and restores the color of the tetrad, as
-     * well as the trail it leaves, to its original color. It also plays a sound effect.
-     */
-    private void returnColor()
-    {
-        try
-        {
-
-            Thread.sleep(33);
-        }
-        catch (Exception e)
-        {
-
-        }
-
-        for (int j = 0; j < 4; j++)
-        {
-            Block b = blocks[j];
-            b.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 180));
-        }
-
-        for (int i = 0; i < grid.getNumRows(); i++)
-        {
-            for (int j = 0; j < grid.getNumCols(); j++)
-            {
-                Block b = grid.get(new Location(i, j));
-                if (b != null && b.getColor().equals(TRAIL))
-                    b.removeSelfFromGrid();
-            }
+            Timeline timeline = overlay.getTimeline();
+            QualityController quality = overlay.getQuality();
+            if (quality.showTrails())
+                timeline.addTrail(min, size, row, TRAIL_TICKS);
+            if (quality.showFlashes())
+                timeline.addFlash(locs, FLASH_TICKS);
+            if (quality.showParticles())
+                overlay.getParticles().emitDrop(locs, code);
         }
 
-
     }
-
-
-    /**
-     * A DropThread is a subclass of Thread that restores the color of the tetrad after 1 frame
-     * (used to apply an animation to the tetrad)
-     *
-     * @author  Pranav Sukesh
-     * @version 3/16/2023
-     */
-    private class DropThread extends Thread
-    {
-        public void run()
-        {
-            try
-            {
-                returnColor();
-            }
-            catch (Exception e)
-            {
-                //do nothing
-            }
-        }
-    }
-
-
-
 }
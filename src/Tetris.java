@@ -1,7 +1,8 @@
 import javax.sound.sampled.*;
-import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * The Tetris class plays a game of Tetris, along with multiple additional features.
@@ -17,22 +18,75 @@ import java.util.*;
  * Background "Music"
  * Sound Effects (press M to toggle mute)
  * Score/Level System with Speed Up
+ * HUD with Lines, Pieces per Second and Combo
  * Custom Block Animations
+ * Configurable Board Size (see BoardConfig)
  *
+ * A game can also be run headless (without a display or sound), in which case it is driven by
+ * calling step once per frame. The shapes come from a seeded random generator and every input
+ * is recorded in a Replay along with its frame, so a game can be played back exactly. Keys
+ * pressed in the window are queued and made at the start of the next step, on the thread that
+ * steps the game, so every input takes effect in the frame it is recorded in. When a game
+ * played with play ends, its replay is saved.
+ *
+ * Games can be played against each other (see Match): clearing two or more lines at once sends
+ * garbage lines to an opponent, and garbage received is pushed in at the bottom of the board
+ * the next time a tetrad locks without clearing a line. The holes of the garbage come from a
+ * generator of their own, so receiving garbage never changes the order of the shapes. A player
+ * whose stack is pushed off the top of the board by garbage is out.
+ *
+ * Everything that decides how a game plays out can be saved into a GameState and restored from
+ * it, which lets a RollbackSession play a game against a remote player and rewind it when a
+ * guessed input turns out wrong.
+ *
+ * Frames, pieces, lines, hard drops, audio clips and threads are counted in Metrics, along with
+ * how long each frame takes and how long after an input the frame that includes it ends.
+ * Ticks, spawns, locks, line clears and sounds are also emitted as Flight Recorder events (see
+ * GameEvents). Rates of play, T-spins and finesse faults are kept live in PlayerStats, and
+ * every tetrad locked is checked for wasted inputs by a FinesseAnalyzer off the game thread.
+ * When a game played with play ends, its score is kept in a HighScoreStore. Every event of
+ * the game can also be written to an EventLog for postmortems. The replay, the score and the
+ * event log are saved from a shutdown hook, so they are kept whether the game is lost or its
+ * window is closed.
  *
  * @author Pranav Sukesh
- * @version 3/13/2023
+ * @version 4/14/2023
  */
 public class Tetris implements ArrowListener
 {
-    private MyBoundedGrid<Block> grid;
+    private static final int FPS = 60;
+    private static final int LINE_CLEAR_TICKS = 10;
+    private static final int[] GARBAGE_SENT = {0, 0, 1, 2, 4};
+    private static final int KEY_QUEUE_SIZE = 64;
+    private static final long GARBAGE_SEED = 0x6A09E667F3BCC909L;
+
+    private BoardConfig config;
+    private Board grid;
     private BlockDisplay display;
+    private Overlay overlay;
     private Tetrad fallingTetrad;
     private int score, level;
-    private Queue<Tetrad> nextTetrads;
-    private ArrayList<Integer> randInts;
-    private Tetrad heldTetrad;
-    private boolean canHold, canShift, isSpaceClicked, mute, anim;
+    private int lines, pieces, frames, combo;
+    private int pendingGarbage, outgoingGarbage;
+    private int gravity, lockTimer;
+    private PieceQueue nextShapes;
+    private int[] bag;
+    private int bagSize;
+    private RestorableRandom rand;
+    private RestorableRandom garbageRand;
+    private Replay replay;
+    private File replayDir;
+    private ArrayBlockingQueue<Integer> keys;
+    private int heldShape;
+    private volatile long inputTime;
+    private PlayerStats stats;
+    private FinesseAnalyzer finesse;
+    private int pieceInputs;
+    private HighScoreStore scores;
+    private EventLog events;
+    private boolean lastMoveRotated;
+    private boolean canHold, canShift, isSpaceClicked, mute, anim, quiet;
+    private boolean finished;
 
 
 
@@ -41,77 +95,309 @@ public class Tetris implements ArrowListener
      */
     public static void main(String[] args)
     {
+        Metrics.export(Integer.getInteger("metrics.port", Metrics.DEFAULT_PORT));
         Tetris game = new Tetris();
+        try
+        {
+            game.setHighScores(new HighScoreStore(new File(System.getProperty("scores.dir",
+                    "scores"))));
+        }
+        catch (IOException e)
+        {
+            System.err.println("high scores: " + e.getMessage());
+        }
+        try
+        {
+            File dir = new File(System.getProperty("events.dir", "events"));
+            dir.mkdirs();
+            game.setEventLog(new EventLog(new File(dir, "game-" + System.currentTimeMillis()
+                    + ".tlog"), game.getReplay().getSeed(), game.getConfig()));
+        }
+        catch (IOException e)
+        {
+            System.err.println("event log: " + e.getMessage());
+        }
+        game.setReplayDir(new File(System.getProperty("replays.dir", "replays")));
         game.play();
     }
 
     /**
-     * Constructs a new Tetris game. It begins the background music and  sets up the grid, queue,
-     * and spawns the first block.
+     * Constructs a new Tetris game on the classic 10 x 20 board.
      */
     public Tetris()
     {
-        try
-        {
-            AudioInputStream inputStream = AudioSystem.getAudioInputStream
-                    (new File("src/Audio/doodoodoodoo.wav"));
-            Clip bgmusic = AudioSystem.getClip();
-            bgmusic.open(inputStream);
-            bgmusic.loop(Clip.LOOP_CONTINUOUSLY);
-        }
-        catch(Exception e)
+        this(new BoardConfig(), false);
+    }
+
+    /**
+     * Constructs a new Tetris game. It begins the background music and  sets up the grid, queue,
+     * and spawns the first block. A headless game has no display and plays no sound.
+     *
+     * @param config    The geometry of the board
+     * @param headless  True if the game should run without a display or sound
+     */
+    public Tetris(BoardConfig config, boolean headless)
+    {
+        this(config, headless, new Random().nextLong());
+    }
+
+    /**
+     * Constructs a new Tetris game whose shapes are drawn from a generator with the given seed.
+     * Two games with the same configuration and seed that are given the same inputs in the same
+     * frames play out the same way.
+     *
+     * @param config    The geometry of the board
+     * @param headless  True if the game should run without a display or sound
+     * @param seed      The seed of the random shapes
+     */
+    public Tetris(BoardConfig config, boolean headless, long seed)
+    {
+        if (!headless)
         {
-            //do nothing
+            try
+            {
+                GameEvents.SoundEvent sound = new GameEvents.SoundEvent();
+                sound.begin();
+                AudioInputStream inputStream = AudioSystem.getAudioInputStream
+                        (new File("src/Audio/doodoodoodoo.wav"));
+                Clip bgmusic = AudioSystem.getClip();
+                Metrics.AUDIO_CLIPS.increment();
+                bgmusic.open(inputStream);
+                bgmusic.loop(Clip.LOOP_CONTINUOUSLY);
+                sound.file = "doodoodoodoo.wav";
+                sound.commit();
+            }
+            catch(Exception e)
+            {
+                //do nothing
+            }
         }
 
+        this.config = config;
         score = 0;
         level = 1;
+        lines = 0;
+        pieces = 0;
+        frames = 0;
+        combo = -1;
+        pendingGarbage = 0;
+        outgoingGarbage = 0;
+        gravity = 0;
+        lockTimer = 0;
         canHold = true;
         isSpaceClicked = false;
         canShift = true;
-        anim = true;
-        mute = false;
-        grid = new MyBoundedGrid<Block>(20, 17);
-        display = new BlockDisplay(grid);
-        display.setTitle("Score: " + score + " Level: " + level + "");
-        display.showBlocks();
-        display.setArrowListener(this);
-
-        for (int i = 0; i < grid.getNumRows(); i++)
+        anim = !headless;
+        mute = headless;
+        grid = new Board(config.getHeight(), config.getWidth());
+        nextShapes = new PieceQueue(config.getPreviewCount());
+        heldShape = -1;
+        if (headless)
         {
-            Block wallBlock = new Block();
-            wallBlock.setColor(Color.WHITE);
-            wallBlock.putSelfInGrid(grid, new Location(i, 10));
+            overlay = new Overlay();
         }
-
-        for (int i = 0; i < 6; i++)
+        else
         {
-            Block wallBlock = new Block();
-            wallBlock.setColor(Color.WHITE);
-            wallBlock.putSelfInGrid(grid, new Location(13, i+11));
+            display = new BlockDisplay(grid, config);
+            display.setPreview(nextShapes);
+            overlay = display.getOverlay();
+            overlay.getParticles().allocate();
+            display.setTitle("Tetris");
+            display.showBlocks();
+            keys = new ArrayBlockingQueue<Integer>(KEY_QUEUE_SIZE);
+            display.setArrowListener(new KeyInputs());
         }
 
-        nextTetrads = new ArrayDeque<Tetrad>();
-        randInts = new ArrayList<Integer>();
-
+        bag = new int[7];
+        bagSize = 0;
+        rand = new RestorableRandom(seed);
+        garbageRand = new RestorableRandom(seed ^ GARBAGE_SEED);
+        replay = new Replay(config, seed);
+        stats = new PlayerStats(FPS, !headless);
+        if (!headless)
+            finesse = new FinesseAnalyzer(config, stats);
 
-        for (int i = 0; i < 7; i++)
+        for (int i = 0; i < config.getPreviewCount(); i++)
         {
-            randInts.add(i);
+            nextShapes.add(nextFromBag());
         }
 
-        for (int i = 0; i < 4; i++)
-        {
-            int randInt = (int) (Math.random() * randInts.size());
+        fallingTetrad = new Tetrad(grid, config.getSpawn(), nextFromBag(), this);
+        fallingTetrad.updateShadow(overlay);
+    }
 
-            nextTetrads.add(new Tetrad(grid, new Location((3*i)+2, 13),
-                    randInts.remove(randInt), this));
-        }
+    /**
+     * Returns the geometry of the board of this game.
+     * @return  The geometry of the board
+     */
+    public BoardConfig getConfig()
+    {
+        return config;
+    }
+
+    /**
+     * Returns the board of this game.
+     * @return  The board of this game
+     */
+    public Board getBoard()
+    {
+        return grid;
+    }
+
+    /**
+     * Returns the overlay of shadow, effects and HUD drawn over the board of this game.
+     * @return  The overlay of this game
+     */
+    public Overlay getOverlay()
+    {
+        return overlay;
+    }
+
+    /**
+     * Returns the queue of upcoming shapes.
+     * @return  The queue of upcoming shapes
+     */
+    public PieceQueue getPreview()
+    {
+        return nextShapes;
+    }
+
+    /**
+     * Returns the shape in the hold slot.
+     * @return  The held shape, or -1 if nothing is held
+     */
+    public int getHeldShape()
+    {
+        return heldShape;
+    }
+
+    /**
+     * Returns the replay this game has recorded so far.
+     * @return  The replay of this game
+     */
+    public Replay getReplay()
+    {
+        return replay;
+    }
+
+    /**
+     * Sets the directory the replay of this game is saved to when play ends it.
+     * @param replayDir The directory, or null to save no replay
+     */
+    public void setReplayDir(File replayDir)
+    {
+        this.replayDir = replayDir;
+    }
+
+    /**
+     * Sets the store the score of this game is added to when play ends it.
+     * @param scores    The high score store, or null to keep no score
+     */
+    public void setHighScores(HighScoreStore scores)
+    {
+        this.scores = scores;
+    }
+
+    /**
+     * Sets the log every event of this game is written to from now on.
+     * @param events    The event log, or null to log nothing
+     */
+    public void setEventLog(EventLog events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * Logs an event of this game in the current frame, if it has an event log. Nothing is
+     * logged while the game is quiet, since the frames it plays then were logged the first
+     * time they were played.
+     * @param type  The type of the event (see EventLog)
+     * @param arg   The first value of the event
+     * @param value The second value of the event
+     */
+    public void logEvent(int type, int arg, int value)
+    {
+        logEvent(type, frames, arg, value);
+    }
+
+    /**
+     * Logs an event of this game in the given frame, if it has an event log and is not quiet.
+     * This is for events logged off the game thread, which must not read the frame count
+     * itself, so the frame is read on the game thread and passed along.
+     * @param type  The type of the event (see EventLog)
+     * @param frame The frame the event belongs to
+     * @param arg   The first value of the event
+     * @param value The second value of the event
+     */
+    private void logEvent(int type, int frame, int arg, int value)
+    {
+        EventLog log = events;
+        if (log != null && !quiet)
+            log.record(type, frame, arg, value);
+    }
+
+    /**
+     * Turns the analysis of finesse on or off. It is on for games with a display and off for
+     * headless games unless turned on here.
+     * @param on    True if every tetrad locked should be analyzed
+     */
+    public void setFinesseAnalysis(boolean on)
+    {
+        finesse = on ? new FinesseAnalyzer(config, stats) : null;
+    }
+
+    /**
+     * Returns the live statistics of this game.
+     * @return  The statistics of this game
+     */
+    public PlayerStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Returns the number of frames played.
+     * @return  The number of frames played
+     */
+    public int getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * Returns the current score.
+     * @return  The current score
+     */
+    public int getScore()
+    {
+        return score;
+    }
 
-        int randInt = (int) (Math.random() * randInts.size());
+    /**
+     * Returns the number of lines cleared.
+     * @return  The number of lines cleared
+     */
+    public int getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Returns the current level.
+     * @return  The current level
+     */
+    public int getLevel()
+    {
+        return level;
+    }
 
-        fallingTetrad = new Tetrad(grid, new Location(1, 4), randInts.remove(randInt), this);
-        fallingTetrad.updateShadow();
+    /**
+     * Returns the falling tetrad. It should only be read from the thread that steps the game.
+     * @return  The falling tetrad
+     */
+    public Tetrad getFallingTetrad()
+    {
+        return fallingTetrad;
     }
 
     /**
@@ -120,7 +406,7 @@ public class Tetris implements ArrowListener
      */
     public boolean getMute()
     {
-        return mute;
+        return mute || quiet;
     }
 
     /**
@@ -129,18 +415,137 @@ public class Tetris implements ArrowListener
      */
     public boolean getAnim()
     {
-        return anim;
+        return anim && !quiet;
     }
 
     /**
-     * Toggles whether animations play or not (to lower lag).
+     * Returns the controller that turns effects down when frames take too long. Its level and
+     * the reason for its last change can be read while the game runs.
+     * @return  The quality controller of this game
+     */
+    public QualityController getQuality()
+    {
+        return overlay.getQuality();
+    }
+
+    /**
+     * Sets whether this game is quiet. A quiet game shows no effects and plays no sounds, and
+     * does not count what happens in it in its statistics, Metrics or Flight Recorder events; a
+     * game is kept quiet while frames it has already shown (and counted) are played again after
+     * a rollback.
+     * @param quiet True to silence effects, sounds and counting, false to let them play as set
+     */
+    public void setQuiet(boolean quiet)
+    {
+        this.quiet = quiet;
+    }
+
+    /**
+     * Returns true if this game is quiet (see setQuiet).
+     * @return  True if this game is quiet, false otherwise
+     */
+    public boolean isQuiet()
+    {
+        return quiet;
+    }
+
+    /**
+     * Saves the state of this game, so it can later be put back exactly as it is now with
+     * restoreState. Only arrays are copied, so this is cheap enough to do every frame.
+     * @param state The state to save into, made for a game with the same configuration
+     */
+    public synchronized void saveState(GameState state)
+    {
+        state.getBoard().copyFrom(grid);
+        state.getPreview().copyFrom(nextShapes);
+        System.arraycopy(bag, 0, state.getBag(), 0, bag.length);
+        state.setBagSize(bagSize);
+        state.setRandom(rand.getState());
+        state.setGarbageRandom(garbageRand.getState());
+        state.setTetrad(fallingTetrad.getShape(), fallingTetrad.getDirection(),
+                fallingTetrad.getLocations());
+
+        int[] counters = state.getCounters();
+        counters[0] = score;
+        counters[1] = level;
+        counters[2] = lines;
+        counters[3] = pieces;
+        counters[4] = frames;
+        counters[5] = combo;
+        counters[6] = pendingGarbage;
+        counters[7] = outgoingGarbage;
+        counters[8] = gravity;
+        counters[9] = lockTimer;
+        counters[10] = heldShape;
+        counters[11] = pieceInputs;
+
+        boolean[] flags = state.getFlags();
+        flags[0] = canHold;
+        flags[1] = canShift;
+        flags[2] = isSpaceClicked;
+        flags[3] = lastMoveRotated;
+
+        state.setReplaySize(replay.size());
+        state.setFrame(frames);
+    }
+
+    /**
+     * Puts this game back in a state saved by saveState. Inputs recorded after the state was
+     * saved are dropped from the replay, since the frames they were made in will be played
+     * again. Effects already playing are left alone.
+     * @param state The state to restore
+     */
+    public synchronized void restoreState(GameState state)
+    {
+        grid.copyFrom(state.getBoard());
+        nextShapes.copyFrom(state.getPreview());
+        System.arraycopy(state.getBag(), 0, bag, 0, bag.length);
+        bagSize = state.getBagSize();
+        rand.setState(state.getRandom());
+        garbageRand.setState(state.getGarbageRandom());
+        fallingTetrad.restore(state.getShape(), state.getDirection(), state.getLocations());
+
+        int[] counters = state.getCounters();
+        score = counters[0];
+        level = counters[1];
+        lines = counters[2];
+        pieces = counters[3];
+        frames = counters[4];
+        combo = counters[5];
+        pendingGarbage = counters[6];
+        outgoingGarbage = counters[7];
+        gravity = counters[8];
+        lockTimer = counters[9];
+        heldShape = counters[10];
+        pieceInputs = counters[11];
+
+        boolean[] flags = state.getFlags();
+        canHold = flags[0];
+        canShift = flags[1];
+        isSpaceClicked = flags[2];
+        lastMoveRotated = flags[3];
+
+        replay.truncate(state.getReplaySize());
+        replay.setFrames(frames);
+        fallingTetrad.updateShadow(overlay);
+        if (display != null)
+            display.setHeldShape(heldShape);
+        showBlocks();
+    }
+
+    /**
+     * Toggles whether animations play or not (to lower lag). Turning them on allocates the pool
+     * of particles, if it was not allocated yet, so none is allocated while the game is played.
      */
     public void haltAnims()
     {
         anim = !anim;
-        if (!anim)
+        if (anim)
+            overlay.getParticles().allocate();
+        else
         {
-            trailCleanUp();
+            overlay.getTimeline().clear();
+            overlay.getParticles().clear();
         }
     }
     /**
@@ -150,15 +555,36 @@ public class Tetris implements ArrowListener
     {
         mute = !mute;
     }
+    /**
+     * Records an input from the player in the replay and the statistics, and notes when the first
+     * input of the frame came so the latency of the input can be measured when the frame ends.
+     * @param action    The input, one of the actions of Replay
+     */
+    private void input(int action)
+    {
+        if (inputTime == 0)
+            inputTime = System.nanoTime();
+        replay.record(frames, action);
+        logEvent(EventLog.INPUT, action, 0);
+        if (!quiet)
+            stats.onInput(action);
+        if (action == Replay.HOLD)
+            pieceInputs = 0;
+        else if (action != Replay.HARD_DROP)
+            pieceInputs++;
+    }
+
     /**
      * Moves the falling tetrad left if possible. It also redraws the display.
      */
     public void moveLeft()
     {
+        input(Replay.LEFT);
         if (canShift)
         {
-            fallingTetrad.translate(0, -1);
-            display.showBlocks();
+            if (fallingTetrad.translate(0, -1))
+                lastMoveRotated = false;
+            showBlocks();
         }
     }
 
@@ -167,10 +593,12 @@ public class Tetris implements ArrowListener
      */
     public void moveRight()
     {
+        input(Replay.RIGHT);
         if (canShift)
         {
-            fallingTetrad.translate(0, 1);
-            display.showBlocks();
+            if (fallingTetrad.translate(0, 1))
+                lastMoveRotated = false;
+            showBlocks();
         }
     }
 
@@ -179,11 +607,13 @@ public class Tetris implements ArrowListener
      */
     public void moveDown()
     {
+        input(Replay.DOWN);
         if (canShift)
         {
-            fallingTetrad.translate(1, 0);
+            if (fallingTetrad.translate(1, 0))
+                lastMoveRotated = false;
             score++;
-            display.showBlocks();
+            showBlocks();
         }
     }
 
@@ -192,20 +622,32 @@ public class Tetris implements ArrowListener
      */
     public void rotateCW()
     {
-        if (canShift)
-        {
-            fallingTetrad.rotate();
-            display.showBlocks();
-        }
+        input(Replay.ROTATE_CW);
+        rotate();
     }
 
     /**
-     * Rotates the falling tetrad clockwise if possible. It also redraws the display.
+     * Rotates the falling tetrad counterclockwise if possible, by rotating it clockwise three
+     * times. It also redraws the display.
      */
     public void rotateCCW()
     {
+        input(Replay.ROTATE_CCW);
         for (int i = 0; i < 3; i++)
-            rotateCW();
+            rotate();
+    }
+
+    /**
+     * Rotates the falling tetrad clockwise if possible and redraws the display.
+     */
+    private void rotate()
+    {
+        if (canShift)
+        {
+            if (fallingTetrad.rotate())
+                lastMoveRotated = true;
+            showBlocks();
+        }
     }
 
     /**
@@ -213,122 +655,145 @@ public class Tetris implements ArrowListener
      * display, updates the score, and activates the special animation.
      */
     public void hardDrop()
+    {
+        input(Replay.HARD_DROP);
+        if (!quiet)
+            Metrics.HARD_DROPS.increment();
+        drop();
+    }
+
+    /**
+     * Drops the falling tetrad to the bottom, scores the drop and redraws the display. The
+     * tetrad locks at the next step, and until then it can no longer be moved or rotated.
+     */
+    private void drop()
     {
         try
         {
-            if (fallingTetrad != null && fallingTetrad.getCenterLocation().getCol() < 10)
+            if (fallingTetrad != null)
             {
-                score += (fallingTetrad.moveToBottom(display))*2;
+                int distance = fallingTetrad.moveToBottom(overlay);
+                score += distance*2;
+                if (distance > 0)
+                    lastMoveRotated = false;
                 canHold = false;
+                canShift = false;
                 isSpaceClicked = true;
 
-                display.showBlocks();
+                showBlocks();
 
             }
         }
         catch (Exception e)
         {
             isSpaceClicked = false;
-            hardDrop();
+            drop();
         }
     }
 
     /**
      * Swaps the falling tetrad with the held tetrad. If there is no held tetrad, it puts the
      * falling tetrad in the hold spot and generates a new tetrad at the top of the main grid.
-     * It also redraws the display.
+     * Only the shape of the held tetrad is kept; it is drawn in the side panel by the display
+     * and comes back facing north. It also redraws the display.
      */
     public void hold()
     {
+        input(Replay.HOLD);
         if (canHold)
         {
-            if (heldTetrad == null)
-            {
-                heldTetrad = fallingTetrad;
-                heldTetrad.translate(16 - heldTetrad.getCenterLocation().getRow(),
-                        13 - heldTetrad.getCenterLocation().getCol());
+            int shape = fallingTetrad.getShape();
+            fallingTetrad.removeFromGrid();
+            overlay.clearShadow();
 
-                for (int i = 0; i < 4; i++)
-                {
-                    heldTetrad.removeShadows();
-                }
+            if (heldShape == -1)
+            {
+                heldShape = shape;
                 updateQueue();
-                canHold = false;
             }
             else
             {
-                canHold = !fallingTetrad.swapWithHeld(heldTetrad);
-                canShift = !canHold;
+                fallingTetrad = new Tetrad(grid, config.getSpawn(), heldShape, this);
+                heldShape = shape;
+                canShift = true;
+                lastMoveRotated = false;
             }
+            canHold = false;
+
+            if (display != null)
+                display.setHeldShape(heldShape);
         }
-        display.showBlocks();
+        showBlocks();
+
+    }
 
+    /**
+     * Redraws the display, if this game has one.
+     */
+    private void showBlocks()
+    {
+        if (display != null)
+            display.showBlocks();
     }
 
     /**
-     * The method checks if the row is completed. A row is completed if all the blocks in the
-     * row are not null.
+     * The method checks if the row is completed. A row is completed if none of the cells in the
+     * row are empty, which the board can tell from its count of occupied cells in the row.
      * @param row   The row to check
      * @return      True if the row is completed, false otherwise
      */
     private boolean isCompletedRow(int row)
     {
-        for (int i = 0; i < 10; i++)
-        {
-            Block b = grid.get(new Location(row, i));
-            if (b == null)
-            {
-                return false;
-            }
-        }
-        return true;
+        return grid.getRowCount(row) == grid.getNumCols();
     }
 
     /**
-     * Removes the given row from the grid. It does this by removing each block in the row from
-     * the grid and moving each block above the row down one row.
+     * Removes the given row from the grid, moving each row above it down one row. The board
+     * does this by moving its row arrays rather than the blocks in them.
      * @param row   The row to remove
      */
     private void clearRow(int row)
     {
-        for (int i = 0; i < 10; i++)
-        {
-            grid.remove(new Location(row, i));
-        }
-        for (int i = row - 1; i >= 0; i--)
-        {
-            for (int j = 0; j < 10; j++)
-            {
-                Block b = grid.get(new Location(i, j));
-                if (b != null)
-                {
-                    grid.remove(new Location(i, j));
-                    grid.put(new Location(i + 1, j), b);
-                }
-            }
-        }
+        grid.removeRow(row);
     }
 
     /**
-     * The method removes all the completed rows from the grid byt first checking if a row is
-     * completed, then removing the row and shifting the blocks above it down if so. It also
-     * plays the clearing sound effect.
+     * The method removes all the completed rows from the grid by first checking if a row is
+     * completed, then removing the row and shifting the blocks above it down if so. Only the
+     * rows of the tetrad that just locked can have been completed, so only those are checked,
+     * from top to bottom. It also plays the clearing sound effect and the line clear animation.
      *
+     * @param locked    The tetrad that just locked
      * @return  The number of rows removed
      */
-    private int clearCompletedRows()
+    private int clearCompletedRows(Tetrad locked)
     {
+        int[] rows = new int[4];
+        Location[] locs = locked.getLocations();
+        for (int i = 0; i < 4; i++)
+        {
+            rows[i] = locs[i].getRow();
+        }
+        Arrays.sort(rows);
+
         int rowsRemoved = 0;
-        for (int i = 0; i < grid.getNumRows(); i++)
+        for (int i = 0; i < rows.length; i++)
         {
-            if (isCompletedRow(i))
+            if ((i == 0 || rows[i] != rows[i - 1]) && isCompletedRow(rows[i]))
             {
-                clearRow(i);
+                if (getAnim() && overlay.getQuality().showParticles())
+                    overlay.getParticles().emitRow(grid, rows[i]);
+                if (getAnim() && overlay.getQuality().showTrails())
+                    overlay.getTimeline().addLineClear(rows[i], LINE_CLEAR_TICKS);
+
+                clearRow(rows[i]);
                 rowsRemoved++;
-                i--;
 
-                if (!mute)
-                    (new ClearThread()).start();
+                if (!getMute())
+                {
+                    (new ClearThread(frames)).start();
+                    Metrics.THREADS.increment();
+                }
             }
         }
 
@@ -337,221 +802,409 @@ public class Tetris implements ArrowListener
 
 
     /**
-     * The method takes the tetrad at the front of the queue and makes it the falling tetrad.
-     * It then adds a new tetrad to the back of the queue and moves all the other tetrads up
-     * 2 rows.
+     * Checks whether the falling tetrad is a T-spin: a T tetrad whose last successful move was
+     * a rotation, with at least three of the four cells diagonal to its center filled or off
+     * the board.
+     * @return  True if the falling tetrad is a T-spin, false otherwise
      */
-    private void updateQueue()
+    private boolean isTSpin()
     {
-        canHold = true;
-        fallingTetrad = nextTetrads.remove();
-        fallingTetrad.translate(-1, -9);
-        Queue<Tetrad> temp = new ArrayDeque<Tetrad>();
-        for (int i = 0; i < 3; i++)
+        if (fallingTetrad.getShape() != 1 || !lastMoveRotated)
+            return false;
+        Location center = fallingTetrad.getCenterLocation();
+        int corners = 0;
+        for (int dr = -1; dr <= 1; dr += 2)
         {
-            temp.add(nextTetrads.remove());
+            for (int dc = -1; dc <= 1; dc += 2)
+            {
+                int r = center.getRow() + dr;
+                int c = center.getCol() + dc;
+                if (!grid.isValid(r, c) || !grid.isEmpty(r, c))
+                    corners++;
+            }
         }
+        return corners >= 3;
+    }
 
-        for (int i = 0; i < 3; i++)
-        {
-            Tetrad t = temp.remove();
-            t.translate(-3, 0);
-            nextTetrads.add(t);
-        }
+    /**
+     * The method takes the shape at the front of the queue and spawns it as the falling tetrad.
+     * It then adds a new shape to the back of the queue. The other upcoming shapes move up one
+     * preview slot just by advancing the queue.
+     */
+    private void updateQueue()
+    {
+        canHold = true;
+        lastMoveRotated = false;
+        pieceInputs = 0;
+        fallingTetrad = new Tetrad(grid, config.getSpawn(), nextShapes.remove(), this);
+        nextShapes.add(nextFromBag());
+        canShift = true;
+        if (!quiet)
+            GameEvents.spawn(fallingTetrad.getShape(), frames);
+        logEvent(EventLog.SPAWN, fallingTetrad.getShape(), 0);
+
+    }
 
-        if (randInts.size() == 0)
+    /**
+     * Draws the next shape from the bag of seven shapes, refilling the bag when it is empty.
+     * @return  The next shape (0 - 6)
+     */
+    private int nextFromBag()
+    {
+        if (bagSize == 0)
         {
             for (int i = 0; i < 7; i++)
             {
-                randInts.add(i);
+                bag[i] = i;
             }
+            bagSize = 7;
         }
 
-        int randInt = (int) (Math.random() * randInts.size());
-        nextTetrads.add(new Tetrad(grid, new Location(11, 13), randInts.remove(randInt), this));
-        canShift = true;
-
+        int randInt = rand.nextInt(bagSize);
+        int shape = bag[randInt];
+        bagSize--;
+        System.arraycopy(bag, randInt + 1, bag, randInt, bagSize - randInt);
+        return shape;
     }
 
     /**
-     * The method removes any extraneous shadows on the board by checking each tile in the grid,
-     * and removing any blocks that are a shadow.
+     * The main gameplay loop of Tetris. It runs at 60 fps, calling step once per frame, and
+     * ends the program when the game is lost. However the program ends (when the game is lost
+     * or when the window is closed), a shutdown hook then finishes the game: it saves the replay
+     * (if there is a replay directory), adds the score to the high score store (if there is one),
+     * prints the best scores of the mode and closes the event log (if there is one).
      */
-    private void shadowCleanUp()
+    public void play()
     {
-        for (int i = 0; i < grid.getNumRows(); i++)
+        Runtime.getRuntime().addShutdownHook(new Thread(this::finish, "Tetris shutdown"));
+        while (true)
         {
-            for (int j = 0; j < grid.getNumCols(); j++)
+            try
             {
-                Block b = grid.get(new Location(i, j));
-                if (b != null && b.getColor().equals(Tetrad.SHADOW))
-                    b.removeSelfFromGrid();
+                Thread.sleep(1000/FPS);
+
+                if (step())
+                {
+                    System.err.println("rip bozo");
+                    System.exit(0);
+                }
+            }
+            catch (Exception e)
+            {
+                //do nothing
             }
+
+
         }
     }
 
     /**
-     * Removes all occurrences of a trail from the game board.
+     * Saves the replay and the score of this game and closes its event log, the first time it
+     * is called.
+     */
+    private synchronized void finish()
+    {
+        if (finished)
+            return;
+        finished = true;
+        saveReplay();
+        saveScore();
+        if (events != null)
+            events.close();
+    }
+
+    /**
+     * Saves the replay of this game to a new file in the replay directory.
      */
-    private void trailCleanUp()
+    private void saveReplay()
     {
-        for (int i = 0; i < grid.getNumRows(); i++)
+        if (replayDir == null)
+            return;
+        File file = new File(replayDir, "game-" + System.currentTimeMillis() + ".replay");
+        try
         {
-            for (int j = 0; j < grid.getNumCols(); j++)
-            {
-                Block b = grid.get(new Location(i, j));
-                if (b != null && b.getColor().equals(Tetrad.TRAIL))
-                    b.removeSelfFromGrid();
-            }
+            replayDir.mkdirs();
+            replay.save(file);
+            System.err.println("replay saved to " + file);
+        }
+        catch (IOException e)
+        {
+            System.err.println("replay: " + e.getMessage());
         }
     }
 
+    /**
+     * Adds the score of this game to the high score store, waits for it to be written, and
+     * prints the best scores of the mode.
+     */
+    private void saveScore()
+    {
+        if (scores == null)
+            return;
+        int mode = HighScoreStore.modeOf(config);
+        scores.add(new HighScore(System.currentTimeMillis(), replay.getSeed(), mode, score,
+                lines, level, pieces, frames));
+        scores.close();
+        List<HighScore> top = scores.getTop(5, mode);
+        for (int i = 0; i < top.size(); i++)
+            System.err.printf("%d. %s%n", i + 1, top.get(i));
+    }
 
     /**
-     * The main gameplay loop of Tetris. It runs at 30 fps, and after a certain number of frames,
-     * the program shifts the current tetrad down a row and clears any completed rows. Every
-     * frame, the program checks to update other processes that need to run at a faster rate.
+     * Runs a single frame of the game. The keys pressed since the last frame are made first, in the
+     * order they were pressed. Every frame, the falling tetrad is pulled down by the gravity of the
+     * level, which builds up in fixed point until it adds up to whole rows; it can be less than a
+     * row a frame or many rows at once. The tetrad falls those rows in one move, as far as its drop
+     * distance allows. Once it has rested on the stack for the lock delay of the level (or right
+     * away after a hard drop), it locks and any completed rows are cleared. Every frame, the
+     * program also updates the other processes that run at a faster rate. The time the frame takes
+     * is reported to the quality controller, and the statistics are handed to the HUD, which only
+     * redraws when they change. The frame is recorded as a tick event for Flight Recorder.
+     *
+     * @return  True if the game is over, false otherwise
      */
-    public void play()
+    public boolean step()
     {
-        int fps = 60;
-        int waitTime = fps;
-        int dropTimer = 0;
-        while (true)
+        GameEvents.TickEvent tick = quiet ? null : GameEvents.beginTick();
+        if (keys != null)
         {
-            try
-            {
-                Thread.sleep(1000/fps);
+            Integer action;
+            while ((action = keys.poll()) != null)
+                Replay.apply(this, action);
+        }
+        boolean gameOver = advance();
+        if (gameOver)
+            logEvent(EventLog.GAME_OVER, 0, 0);
+        if (tick != null)
+        {
+            tick.frame = frames;
+            tick.level = level;
+            tick.gameOver = gameOver;
+            tick.commit();
+        }
+        return gameOver;
+    }
 
-                dropTimer++;
+    /**
+     * Runs the frame that step describes.
+     * @return  True if the game is over, false otherwise
+     */
+    private boolean advance()
+    {
+        long start = System.nanoTime();
+        overlay.getTimeline().advance();
+        overlay.getParticles().update(grid.getNumRows());
 
-                level = (score / 3000) + 1;
-                if (level < 16)
-                    waitTime = (int) ((60*Math.exp(0.2*(1-level))/2));
-                else
-                    waitTime = 3;
+        int newLevel = (score / 3000) + 1;
+        if (newLevel != level)
+            logEvent(EventLog.LEVEL, 0, newLevel);
+        level = newLevel;
 
+        int distance = fallingTetrad.dropDistance();
+        if (distance > 0)
+        {
+            lockTimer = 0;
+            gravity += Gravity.rowsPerFrame(level);
+            int rows = Math.min(gravity >> Gravity.FRACTION_BITS, distance);
+            gravity &= Gravity.FRACTION_MASK;
+            if (rows > 0 && fallingTetrad.translate(rows, 0))
+            {
+                distance -= rows;
+                lastMoveRotated = false;
+            }
+        }
 
-                shadowCleanUp();
+        if (distance == 0)
+        {
+            gravity = 0;
+            lockTimer++;
 
-                if (fallingTetrad != null && fallingTetrad.getCenterLocation().getCol() > 10)
+            if (isSpaceClicked || lockTimer >= Gravity.lockDelay(level))
+            {
+                if (!quiet)
+                    GameEvents.lock(fallingTetrad.getShape(), frames, isSpaceClicked);
+                logEvent(EventLog.LOCK, fallingTetrad.getShape(), isSpaceClicked ? 1 : 0);
+                isSpaceClicked = false;
+                lockTimer = 0;
+                canShift = true;
+                canHold = false;
+
+                if (isGameOver())
                 {
-                    fallingTetrad.removeShadows();
-                    Tetrad temp = fallingTetrad;
-                    fallingTetrad = heldTetrad;
-                    heldTetrad = temp;
-
-                    while (heldTetrad.getDirection() != Location.NORTH)
-                    {
-                        heldTetrad.rotate();
-                    }
+                    return true;
                 }
 
-                if (heldTetrad != null && heldTetrad.getCenterLocation().getCol() < 10)
+                if (finesse != null && !quiet)
+                    finesse.submit(grid, fallingTetrad.getShape(),
+                            fallingTetrad.getLocations(), pieceInputs);
+                boolean tSpin = isTSpin();
+                int rowsRemoved = clearCompletedRows(fallingTetrad);
+                pieces++;
+                lines += rowsRemoved;
+                if (!quiet)
                 {
-                    fallingTetrad.removeShadows();
-                    Tetrad temp = fallingTetrad;
-                    fallingTetrad = heldTetrad;
-                    heldTetrad = temp;
-
-                    while (heldTetrad.getDirection() != Location.NORTH)
-                    {
-                        heldTetrad.rotate();
-                    }
-
-                    heldTetrad.translate(18 - heldTetrad.getCenterLocation().getRow(),
-                            13 - heldTetrad.getCenterLocation().getCol());
-
+                    stats.onLock(rowsRemoved, tSpin);
+                    Metrics.PIECES.increment();
+                    Metrics.LINES.add(rowsRemoved);
+                    if (rowsRemoved == 4)
+                        Metrics.TETRISES.increment();
                 }
-
-
-                if (fallingTetrad != null && !fallingTetrad.canMoveDown(1))
+                if (rowsRemoved > 0)
                 {
-                    if (isSpaceClicked)
-                    {
-                        isSpaceClicked = false;
-                        canShift = false;
-                        dropTimer = waitTime;
-                    }
-
-
-
+                    combo++;
+                    if (!quiet)
+                        GameEvents.lineClear(rowsRemoved, combo + 1, frames);
+                    logEvent(EventLog.CLEAR, rowsRemoved, combo + 1);
                 }
+                else
+                    combo = -1;
 
 
-                if (dropTimer == waitTime)
+                sendGarbage(GARBAGE_SENT[rowsRemoved]);
+                int garbage = rowsRemoved == 0 ? takePendingGarbage() : 0;
+                if (garbage > 0 && (addGarbage(garbage) || isGameOver()))
                 {
-                    canShift = true;
+                    return true;
+                }
 
-                    if (fallingTetrad != null && !fallingTetrad.translate(1, 0))
-                    {
+                if (rowsRemoved == 1)
+                {
+                    score += 100*level;
+                }
+                else if (rowsRemoved == 2)
+                {
+                    score += 300*level;
+                }
+                else if (rowsRemoved == 3)
+                {
+                    score += 500*level;
+                }
+                else if (rowsRemoved == 4)
+                {
+                    score += 1000*level;
+                }
 
-                        canHold = false;
+                updateQueue();
 
-                        if (isGameOver())
-                        {
-                            System.err.println("rip bozo");
-                            System.exit(0);
-                        }
+                canHold = true;
+            }
+        }
 
-                        trailCleanUp();
+        frames++;
+        replay.setFrames(frames);
+        if (!quiet)
+            stats.onFrame(score);
+        overlay.getHud().update(score, level, lines, Math.max(0, combo), stats);
+        fallingTetrad.updateShadow(overlay);
+        showBlocks();
+        long end = System.nanoTime();
+        overlay.getQuality().recordLogic(end - start);
+        if (quiet)
+            return false;
+        Metrics.FRAMES.increment();
+        Metrics.FRAME_TIME.record(end - start);
+        long input = inputTime;
+        if (input != 0)
+        {
+            inputTime = 0;
+            Metrics.INPUT_LATENCY.record(end - input);
+        }
+        return false;
+    }
 
-                        int rowsRemoved = clearCompletedRows();
 
+    /**
+     * Queues garbage lines sent by an opponent. They are pushed in the next time a tetrad locks
+     * without clearing a line, unless lines cleared before then cancel them out.
+     * @param rows  The number of garbage lines to receive
+     */
+    public synchronized void receiveGarbage(int rows)
+    {
+        for (int i = 0; i < rows; i++)
+            replay.record(frames, Replay.GARBAGE);
+        logEvent(EventLog.INPUT, Replay.GARBAGE, rows);
+        pendingGarbage += rows;
+    }
 
-                        if (rowsRemoved == 1)
-                        {
-                            score += 100*level;
-                        }
-                        else if (rowsRemoved == 2)
-                        {
-                            score += 300*level;
-                        }
-                        else if (rowsRemoved == 3)
-                        {
-                            score += 500*level;
-                        }
-                        else if (rowsRemoved == 4)
-                        {
-                            score += 1000*level;
-                        }
+    /**
+     * Returns the garbage lines this game has sent since the last call, and resets the count.
+     * @return  The number of garbage lines to pass on to an opponent
+     */
+    public synchronized int takeOutgoingGarbage()
+    {
+        int rows = outgoingGarbage;
+        outgoingGarbage = 0;
+        return rows;
+    }
 
-                        updateQueue();
+    /**
+     * Returns the garbage lines waiting to be pushed in, and resets the count.
+     * @return  The number of garbage lines to push in
+     */
+    private synchronized int takePendingGarbage()
+    {
+        int rows = pendingGarbage;
+        pendingGarbage = 0;
+        return rows;
+    }
 
-                        canHold = true;
-                    }
+    /**
+     * Returns the number of garbage lines waiting to be pushed in.
+     * @return  The number of pending garbage lines
+     */
+    public synchronized int getPendingGarbage()
+    {
+        return pendingGarbage;
+    }
 
-                    dropTimer = 0;
-                }
+    /**
+     * Sends garbage lines for a line clear. They first cancel out garbage waiting to be
+     * received, and whatever is left over is sent on to the opponent.
+     * @param rows  The number of garbage lines the clear is worth
+     */
+    private synchronized void sendGarbage(int rows)
+    {
+        int cancelled = Math.min(rows, pendingGarbage);
+        pendingGarbage -= cancelled;
+        outgoingGarbage += rows - cancelled;
+    }
 
-                display.setTitle("Score: " + score + " Level: " + level + "");
-                fallingTetrad.updateShadow();
-                display.showBlocks();
-            }
-            catch (Exception e)
+    /**
+     * Pushes the given number of garbage lines in at the bottom of the board, moving the stack
+     * up. Every garbage line has a hole in the same random column, drawn from the generator of
+     * the garbage rather than the one of the shapes.
+     * @param rows  The number of garbage lines to push in
+     * @return      True if blocks of the stack were pushed off the top of the board
+     */
+    private boolean addGarbage(int rows)
+    {
+        rows = Math.min(rows, grid.getNumRows());
+        int hole = garbageRand.nextInt(grid.getNumCols());
+        boolean toppedOut = grid.insertRowsAtBottom(rows);
+        for (int row = grid.getNumRows() - rows; row < grid.getNumRows(); row++)
+        {
+            for (int col = 0; col < grid.getNumCols(); col++)
             {
-                //do nothing
+                if (col != hole)
+                    grid.set(row, col, Board.GARBAGE);
             }
-
-
         }
+        return toppedOut;
     }
 
-
     /**
-     * Checks if the game is over. The game is over if there is a block at the location (1,4)
-     * (the spawn location of the next tetrad).
+     * Checks if the game is over. The game is over if there is a block in the top two rows
+     * around the spawn location of the next tetrad.
      * @return  True if the game is over, false otherwise
      */
     private boolean isGameOver()
     {
+        int spawnCol = config.getSpawn().getCol();
         for (int i = 0; i <= 1; i++)
         {
-            for (int j = 3; j <= 6; j++)
+            for (int j = spawnCol - 1; j <= spawnCol + 2; j++)
             {
-                Block b = grid.get(new Location(i, j));
-                if (b != null && !b.getColor().equals(Tetrad.TRAIL)
-                        && !b.getColor().equals(Tetrad.SHADOW))
+                if (grid.get(i, j) != Board.EMPTY)
                     return true;
             }
         }
@@ -560,17 +1213,24 @@ public class Tetris implements ArrowListener
 
     /**
      * The method plays a sound effect after a row is cleared.
+     * @param frame The frame the row was cleared in
      */
-    private void playClear()
+    private void playClear(int frame)
     {
         try
         {
 
+            GameEvents.SoundEvent sound = new GameEvents.SoundEvent();
+            sound.begin();
             AudioInputStream dream = AudioSystem.getAudioInputStream
                     (new File("src/Audio/OHDREAMMMM.wav"));
             Clip clear = AudioSystem.getClip();
+            Metrics.AUDIO_CLIPS.increment();
             clear.open(dream);
             clear.start();
+            sound.file = "OHDREAMMMM.wav";
+            logEvent(EventLog.AUDIO, frame, EventLog.CLEAR_SOUND, 0);
+            sound.commit();
         }
         catch (Exception e)
         {
@@ -578,6 +1238,71 @@ public class Tetris implements ArrowListener
         }
     }
 
+    /**
+     * A KeyInputs takes the keys pressed in the window of the game and queues them to be made
+     * at the start of the next step. The time of the first key of a frame is noted so the
+     * latency of the input can be measured from the key press. Muting and turning animations
+     * off do not change how the game plays out, so they are made right away.
+     */
+    private class KeyInputs implements ArrowListener
+    {
+        /**
+         * Queues an input. It is dropped if the queue is full.
+         * @param action    The input, one of the actions of Replay
+         */
+        private void queue(int action)
+        {
+            if (inputTime == 0)
+                inputTime = System.nanoTime();
+            keys.offer(action);
+        }
+
+        public void rotateCW()
+        {
+            queue(Replay.ROTATE_CW);
+        }
+
+        public void moveDown()
+        {
+            queue(Replay.DOWN);
+        }
+
+        public void moveLeft()
+        {
+            queue(Replay.LEFT);
+        }
+
+        public void moveRight()
+        {
+            queue(Replay.RIGHT);
+        }
+
+        public void hardDrop()
+        {
+            queue(Replay.HARD_DROP);
+        }
+
+        public void hold()
+        {
+            queue(Replay.HOLD);
+        }
+
+        public void muteSFX()
+        {
+            Tetris.this.muteSFX();
+        }
+
+        public void haltAnims()
+        {
+            Tetris.this.haltAnims();
+        }
+
+        public void rotateCCW()
+        {
+            queue(Replay.ROTATE_CCW);
+        }
+    }
+
     /**
      * A ClearThread is a Thread that plays the sound effect for clearing a row.
      * @author  Pranav Sukesh
@@ -585,10 +1310,21 @@ public class Tetris implements ArrowListener
      */
     private class ClearThread extends Thread
     {
+        private int frame;
+
+        /**
+         * Constructs a thread to play the sound for a row cleared in the given frame.
+         * @param frame The frame the row was cleared in
+         */
+        public ClearThread(int frame)
+        {
+            this.frame = frame;
+        }
+
         @Override
         public void run()
         {
-            playClear();
+            playClear(frame);
         }
     }
 
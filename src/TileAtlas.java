@@ -0,0 +1,184 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A TileAtlas holds every block tile the game draws, rendered once into a single image: one tile
+ * per palette code, plus the shadow tile and the trail tile at each step of its fade. The tiles are
+ * composited over the black border color when the atlas is built, so they are fully opaque and
+ * drawing a cell is a plain image copy instead of several translucent fills. A wall column is
+ * cached as its own image for each height of board it is drawn for, and a strip of small particle
+ * tiles (one per palette code) is kept next to the block tiles.
+ *
+ * An atlas can be shared by renderers drawing on several threads at once. Its tiles are never
+ * changed after it is built, and each wall column is drawn in full before it is published to
+ * the other threads through a concurrent map.
+ *
+ * An atlas is built for one block size; a renderer builds a new one when its block size changes.
+ *
+ * @author Pranav Sukesh
+ * @version 3/29/2023
+ */
+public class TileAtlas
+{
+    public static final int SHADOW_TILE = Palette.size();
+    public static final int TRAIL_TILE = Palette.size() + 1;
+    public static final int FADE_LEVELS = 4;
+
+    private static final int TILES = Palette.size() + 1 + FADE_LEVELS;
+
+    private int blockSize;
+    private GraphicsConfiguration gc;
+    private BufferedImage tiles;
+    private BufferedImage particles;
+    private int particleSize;
+    private ConcurrentHashMap<Integer, BufferedImage> wallColumns;
+
+    /**
+     * Constructs an atlas of tiles of the given size. The images are created to be compatible
+     * with the given graphics configuration, or as plain RGB images if it is null.
+     * @param blockSize The width and height of a tile in pixels
+     * @param gc        The graphics configuration the tiles will be drawn to (may be null)
+     */
+    public TileAtlas(int blockSize, GraphicsConfiguration gc)
+    {
+        this.blockSize = blockSize;
+        this.gc = gc;
+        wallColumns = new ConcurrentHashMap<Integer, BufferedImage>();
+        tiles = createImage(blockSize * TILES, blockSize);
+
+        Graphics2D g = tiles.createGraphics();
+        g.setColor(BoardRenderer.BORDER);
+        g.fillRect(0, 0, tiles.getWidth(), tiles.getHeight());
+
+        int outline = BoardRenderer.outlineFor(blockSize);
+        for (int code = 1; code < Palette.size(); code++)
+        {
+            int x = code * blockSize;
+            g.setColor(Palette.colorOf((byte) code));
+            g.fillRect(x + outline/2 + blockSize / 5, outline/2 + blockSize / 5,
+                    blockSize*3/5 - 1, blockSize*3/5 - 1);
+            g.fillRect(x + outline / 2, outline / 2, blockSize - outline, blockSize - outline);
+        }
+
+        g.setColor(Tetrad.SHADOW);
+        g.fillRect(SHADOW_TILE * blockSize + outline / 2, outline / 2,
+                blockSize - outline, blockSize - outline);
+
+        for (int level = 0; level < FADE_LEVELS; level++)
+        {
+            g.setColor(fadeColor(level));
+            g.fillRect((TRAIL_TILE + level) * blockSize, 0, blockSize, blockSize);
+        }
+        g.dispose();
+
+        particleSize = Math.max(2, blockSize / 5);
+        particles = createImage(particleSize * Palette.size(), particleSize);
+        g = particles.createGraphics();
+        g.setColor(BoardRenderer.BORDER);
+        g.fillRect(0, 0, particles.getWidth(), particles.getHeight());
+        for (int code = 1; code < Palette.size(); code++)
+        {
+            g.setColor(Palette.colorOf((byte) code));
+            g.fillRect(code * particleSize, 0, particleSize, particleSize);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the color of the trail at the given step of its fade.
+     * @param level The step of the fade (0 is the brightest, up to FADE_LEVELS - 1)
+     * @return      The color of the trail at that step
+     */
+    public static Color fadeColor(int level)
+    {
+        Color c = Tetrad.TRAIL;
+        return new Color(c.getRed(), c.getGreen(), c.getBlue(),
+                c.getAlpha() * (FADE_LEVELS - level) / FADE_LEVELS);
+    }
+
+    /**
+     * Creates an opaque image of the given size.
+     * @param width     The width of the image
+     * @param height    The height of the image
+     * @return          A new image
+     */
+    private BufferedImage createImage(int width, int height)
+    {
+        if (gc != null)
+            return gc.createCompatibleImage(width, height, Transparency.OPAQUE);
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Returns the size of the tiles in this atlas.
+     * @return  The width and height of a tile in pixels
+     */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * Draws a tile with its top left corner at the given pixel.
+     * @param g     The graphics to draw with
+     * @param tile  The tile (a palette code, SHADOW_TILE, or TRAIL_TILE plus a fade step)
+     * @param x     The x coordinate of the top left corner
+     * @param y     The y coordinate of the top left corner
+     */
+    public void drawTile(Graphics g, int tile, int x, int y)
+    {
+        int sx = tile * blockSize;
+        g.drawImage(tiles, x, y, x + blockSize, y + blockSize,
+                sx, 0, sx + blockSize, blockSize, null);
+    }
+
+    /**
+     * Returns the size of the particle tiles in this atlas.
+     * @return  The width and height of a particle in pixels
+     */
+    public int getParticleSize()
+    {
+        return particleSize;
+    }
+
+    /**
+     * Draws a particle tile with its top left corner at the given pixel.
+     * @param g     The graphics to draw with
+     * @param code  The palette code of the particle
+     * @param x     The x coordinate of the top left corner
+     * @param y     The y coordinate of the top left corner
+     */
+    public void drawParticle(Graphics g, int code, int x, int y)
+    {
+        int sx = code * particleSize;
+        g.drawImage(particles, x, y, x + particleSize, y + particleSize,
+                sx, 0, sx + particleSize, particleSize, null);
+    }
+
+    /**
+     * Returns an image of a column of wall tiles of the given number of rows. One image is
+     * cached for each number of rows, and it is only drawn the first time it is asked for.
+     * @param rows  The number of rows in the column
+     * @return      The image of the wall column
+     */
+    public BufferedImage getWallColumn(int rows)
+    {
+        return wallColumns.computeIfAbsent(rows, this::drawWallColumn);
+    }
+
+    /**
+     * Draws a column of wall tiles.
+     * @param rows  The number of rows in the column
+     * @return      A new image of the wall column
+     */
+    private BufferedImage drawWallColumn(int rows)
+    {
+        BufferedImage column = createImage(blockSize, rows * blockSize);
+        Graphics2D g = column.createGraphics();
+        for (int row = 0; row < rows; row++)
+            drawTile(g, Board.WALL, 0, row * blockSize);
+        g.dispose();
+        return column;
+    }
+}
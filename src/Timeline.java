@@ -0,0 +1,248 @@
+/**
+ * A Timeline holds the animation effects that are currently playing: the white flash of a tetrad
+ * that was hard dropped, the fading trail above it, and the glow of a cleared line. Each effect
+ * has the tick it started on and the tick it ends on. The timeline is advanced once per frame by
+ * the game, and expired effects are dropped at that point, so animations run on game time
+ * rather than on threads and play out the same way every time the same frames are run.
+ *
+ * Effects are only drawn over the board by the renderer; they never change the cells of the
+ * board. They are kept in fixed arrays, so adding an effect does not allocate. When every slot
+ * is taken, new effects are ignored.
+ *
+ * @author Pranav Sukesh
+ * @version 3/29/2023
+ */
+public class Timeline
+{
+    public static final int FLASH = 0;
+    public static final int TRAIL = 1;
+    public static final int LINE_CLEAR = 2;
+
+    private static final int CAPACITY = 32;
+
+    private int tick;
+    private int count;
+    private int[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int[] argA;
+    private int[] argB;
+    private int[] argC;
+    private int[] cellRows;
+    private int[] cellCols;
+
+    /**
+     * Constructs an empty timeline at tick 0.
+     */
+    public Timeline()
+    {
+        tick = 0;
+        count = 0;
+        kinds = new int[CAPACITY];
+        starts = new int[CAPACITY];
+        ends = new int[CAPACITY];
+        argA = new int[CAPACITY];
+        argB = new int[CAPACITY];
+        argC = new int[CAPACITY];
+        cellRows = new int[CAPACITY * 4];
+        cellCols = new int[CAPACITY * 4];
+    }
+
+    /**
+     * Moves the timeline forward one tick and drops the effects that have ended.
+     */
+    public synchronized void advance()
+    {
+        tick++;
+        int i = 0;
+        while (i < count)
+        {
+            if (ends[i] <= tick)
+                remove(i);
+            else
+                i++;
+        }
+    }
+
+    /**
+     * Removes every effect from the timeline.
+     */
+    public synchronized void clear()
+    {
+        count = 0;
+    }
+
+    /**
+     * Adds a flash over the given cells that lasts for the given number of ticks.
+     * @param locs      The cells to flash (at most four)
+     * @param duration  The number of ticks the flash lasts
+     */
+    public synchronized void addFlash(Location[] locs, int duration)
+    {
+        int i = add(FLASH, duration, Math.min(locs.length, 4), 0, 0);
+        if (i < 0)
+            return;
+        for (int j = 0; j < argA[i]; j++)
+        {
+            cellRows[i * 4 + j] = locs[j].getRow();
+            cellCols[i * 4 + j] = locs[j].getCol();
+        }
+    }
+
+    /**
+     * Adds a trail that covers the given columns from the top of the board down to (but not
+     * including) the given row, fading out over the given number of ticks.
+     * @param min       The leftmost column of the trail
+     * @param size      The number of columns in the trail
+     * @param row       The row the trail ends at
+     * @param duration  The number of ticks the trail lasts
+     */
+    public synchronized void addTrail(int min, int size, int row, int duration)
+    {
+        add(TRAIL, duration, min, size, row);
+    }
+
+    /**
+     * Adds a glow over the given row, fading out over the given number of ticks.
+     * @param row       The row that was cleared
+     * @param duration  The number of ticks the glow lasts
+     */
+    public synchronized void addLineClear(int row, int duration)
+    {
+        add(LINE_CLEAR, duration, row, 0, 0);
+    }
+
+    /**
+     * Stores a new effect in the next free slot.
+     * @param kind      The kind of effect
+     * @param duration  The number of ticks the effect lasts (at least 1)
+     * @param a         The first argument of the effect
+     * @param b         The second argument of the effect
+     * @param c         The third argument of the effect
+     * @return          The slot of the effect, or -1 if the timeline is full
+     */
+    private int add(int kind, int duration, int a, int b, int c)
+    {
+        if (count == CAPACITY)
+            return -1;
+        int i = count++;
+        kinds[i] = kind;
+        starts[i] = tick;
+        ends[i] = tick + Math.max(1, duration);
+        argA[i] = a;
+        argB[i] = b;
+        argC[i] = c;
+        return i;
+    }
+
+    /**
+     * Removes the effect in the given slot by moving the last effect into it.
+     * @param i The slot to remove
+     */
+    private void remove(int i)
+    {
+        int last = --count;
+        kinds[i] = kinds[last];
+        starts[i] = starts[last];
+        ends[i] = ends[last];
+        argA[i] = argA[last];
+        argB[i] = argB[last];
+        argC[i] = argC[last];
+        System.arraycopy(cellRows, last * 4, cellRows, i * 4, 4);
+        System.arraycopy(cellCols, last * 4, cellCols, i * 4, 4);
+    }
+
+    /**
+     * Returns the current tick of the timeline.
+     * @return  The current tick
+     */
+    public synchronized int getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Returns the number of effects that are playing.
+     * @return  The number of effects
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the kind of the effect at the given index (FLASH, TRAIL or LINE_CLEAR).
+     * @param i     The index of the effect
+     * @return      The kind of the effect
+     */
+    public synchronized int getKind(int i)
+    {
+        return kinds[i];
+    }
+
+    /**
+     * Returns how far the effect at the given index has played, from 0 (just started) up to
+     * but not including the given number of steps.
+     * @param i     The index of the effect
+     * @param steps The number of steps to divide the effect into
+     * @return      The step the effect is on
+     */
+    public synchronized int getStep(int i, int steps)
+    {
+        return (tick - starts[i]) * steps / (ends[i] - starts[i]);
+    }
+
+    /**
+     * Returns the first argument of the effect at the given index: the number of cells of a
+     * flash, the leftmost column of a trail, or the row of a line clear.
+     * @param i     The index of the effect
+     * @return      The first argument of the effect
+     */
+    public synchronized int getArgA(int i)
+    {
+        return argA[i];
+    }
+
+    /**
+     * Returns the second argument of the effect at the given index: the number of columns of
+     * a trail.
+     * @param i     The index of the effect
+     * @return      The second argument of the effect
+     */
+    public synchronized int getArgB(int i)
+    {
+        return argB[i];
+    }
+
+    /**
+     * Returns the third argument of the effect at the given index: the row a trail ends at.
+     * @param i     The index of the effect
+     * @return      The third argument of the effect
+     */
+    public synchronized int getArgC(int i)
+    {
+        return argC[i];
+    }
+
+    /**
+     * Returns the row of a cell of the flash at the given index.
+     * @param i     The index of the effect
+     * @param j     The cell of the flash
+     * @return      The row of the cell
+     */
+    public synchronized int getCellRow(int i, int j)
+    {
+        return cellRows[i * 4 + j];
+    }
+
+    /**
+     * Returns the column of a cell of the flash at the given index.
+     * @param i     The index of the effect
+     * @param j     The cell of the flash
+     * @return      The column of the cell
+     */
+    public synchronized int getCellCol(int i, int j)
+    {
+        return cellCols[i * 4 + j];
+    }
+}